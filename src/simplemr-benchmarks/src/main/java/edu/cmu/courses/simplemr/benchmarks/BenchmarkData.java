@@ -0,0 +1,147 @@
+import Constants;
+import DataType;
+import IntermediateFileWriter;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The synthetic datasets of benchmarks. Every dataset is generated
+ * from a fixed seed, so the runs of a benchmark always see the same
+ * data. The words are drawn from a skewed vocabulary, a few words
+ * are very frequent and most are rare, like in real text.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class BenchmarkData {
+    public static final long SEED = 20131017L;
+    public static final int VOCABULARY_SIZE = 50000;
+    public static final int WORDS_PER_LINE = 10;
+
+    public static String[] words(int count, long seed){
+        Random random = new Random(seed);
+        String[] words = new String[count];
+        for(int i = 0; i < count; i++){
+            words[i] = word(random);
+        }
+        return words;
+    }
+
+    public static String[] lines(int count, long seed){
+        Random random = new Random(seed);
+        String[] lines = new String[count];
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < count; i++){
+            sb.setLength(0);
+            for(int j = 0; j < WORDS_PER_LINE; j++){
+                if(j > 0){
+                    sb.append(' ');
+                }
+                sb.append(word(random));
+            }
+            lines[i] = sb.toString();
+        }
+        return lines;
+    }
+
+    /**
+     * Get the edges of a graph, a line "fromNode toNode" for every edge.
+     * Like the words, a few nodes have most of the edges.
+     */
+    public static String[] edges(int count, int nodeCount, long seed){
+        Random random = new Random(seed);
+        String[] lines = new String[count];
+        for(int i = 0; i < count; i++){
+            lines[i] = node(random, nodeCount) + " " + node(random, nodeCount);
+        }
+        return lines;
+    }
+
+    /**
+     * Get lines in the reducer output format, a key and a count
+     * separated by the delimiter.
+     */
+    public static String[] keyValueLines(int count, long seed){
+        Random random = new Random(seed);
+        String[] lines = new String[count];
+        for(int i = 0; i < count; i++){
+            lines[i] = word(random) + Constants.MAPREDUCE_DELIMITER + random.nextInt(1000);
+        }
+        return lines;
+    }
+
+    /**
+     * Write the words into sorted intermediate files of about the same
+     * size, like the map output of WordCount fetched by a reducer. The
+     * words are dealt out to the files in turn, every one with count 1.
+     */
+    public static List<String> writeIntermediateFiles(File dir, String[] words, int fileCount)
+            throws IOException {
+        List<List<String>> parts = new ArrayList<List<String>>();
+        for(int i = 0; i < fileCount; i++){
+            parts.add(new ArrayList<String>());
+        }
+        for(int i = 0; i < words.length; i++){
+            parts.get(i % fileCount).add(words[i]);
+        }
+        List<String> files = new ArrayList<String>();
+        byte[] buffer = new byte[1024];
+        for(int i = 0; i < fileCount; i++){
+            List<String> part = parts.get(i);
+            Collections.sort(part);
+            String file = dir.getAbsolutePath() + Constants.FILE_SEPARATOR + "sorted_" + i;
+            IntermediateFileWriter writer = new IntermediateFileWriter(file);
+            for(String word : part){
+                int keyLength = DataType.STRING.encode(word, buffer, 0);
+                int valueLength = DataType.LONG.encode(1L, buffer, keyLength);
+                writer.append(buffer, 0, keyLength, keyLength, valueLength);
+            }
+            writer.close();
+            files.add(file);
+        }
+        return files;
+    }
+
+    public static void writeLines(String file, String[] lines)
+            throws IOException {
+        BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), Constants.CHARSET));
+        try {
+            for(String line : lines){
+                writer.write(line);
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    public static File createTempDir(String prefix)
+            throws IOException {
+        File dir = File.createTempFile(prefix, "");
+        if(!dir.delete() || !dir.mkdirs()){
+            throw new IOException("can't create temp dir " + dir);
+        }
+        return dir;
+    }
+
+    private static long node(Random random, int nodeCount){
+        double r = random.nextDouble();
+        return (long) (r * r * nodeCount);
+    }
+
+    /**
+     * Pick a word of the vocabulary, the index of word is skewed to
+     * small numbers by squaring a uniform draw.
+     */
+    private static String word(Random random){
+        double r = random.nextDouble();
+        int index = (int) (r * r * VOCABULARY_SIZE);
+        return "w" + Integer.toString(index, 36);
+    }
+}
@@ -0,0 +1,198 @@
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import AbstractMapReduce;
+import JobConfig;
+import DFSConstants;
+import GraphDegree;
+import WordCount;
+import JobInfo;
+import JobStatus;
+import MapperTask;
+import ReducerTask;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The end-to-end benchmark of SimpleMR. It starts a MiniCluster,
+ * generates the input of the job from a fixed seed, loads it into
+ * DFS, runs the job and reports the wall time and throughput of
+ * every phase:
+ *
+ * load   - writing the input into DFS
+ * map    - from submitting the job to the last mapper task finished
+ * reduce - from then to the last reducer task finished, the shuffle
+ *          runs during the map phase and only its tail is counted here
+ * total  - from submitting the job to its end
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class ClusterBenchmark {
+    private static final int GRAPH_NODES = 100000;
+
+    @Parameter(names = {"-j", "--job"}, description = "the job to run, WordCount or GraphDegree")
+    private String jobName = WordCount.class.getSimpleName();
+
+    @Parameter(names = {"-i", "--input-lines"}, description = "the number of lines of input")
+    private int inputLines = 1000000;
+
+    @Parameter(names = {"-ds", "--dfs-slaves"}, description = "the number of DFS slaves")
+    private int slaveAmount = 2;
+
+    @Parameter(names = {"-tt", "--task-trackers"}, description = "the number of task trackers")
+    private int taskTrackerAmount = 2;
+
+    @Parameter(names = {"-ms", "--mapper-slots"}, description = "the mapper slots of every task tracker")
+    private int mapperSlots = 4;
+
+    @Parameter(names = {"-m", "--mapper-number"}, description = "the number of mapper")
+    private int mapperAmount = 8;
+
+    @Parameter(names = {"-r", "--reducer-number"}, description = "the number of reducer")
+    private int reducerAmount = 4;
+
+    @Parameter(names = {"-l", "--line-count"}, description = "the count of lines per file chunk in dfs")
+    private int lineCount = 40000;
+
+    @Parameter(names = {"-b", "--heartbeat"}, description = "the heartbeat period of task trackers (ms)")
+    private long heartbeatPeriod = 200;
+
+    @Parameter(names = {"-rn", "--runs"}, description = "how many times the job is run")
+    private int runs = 3;
+
+    @Parameter(names = {"-a", "--job-args"}, variableArity = true, description = "more options of the job, " +
+            "like -z 1 or -c false")
+    private List<String> jobArgs = new ArrayList<String>();
+
+    @Parameter(names = {"-h", "--help"}, help = true)
+    private boolean help;
+
+    public void run()
+            throws Exception {
+        File dir = BenchmarkData.createTempDir("simplemr_cluster_");
+        MiniCluster cluster = new MiniCluster(dir, slaveAmount, taskTrackerAmount);
+        cluster.setMapperSlots(mapperSlots);
+        cluster.setHeartbeatPeriod(heartbeatPeriod);
+        try {
+            cluster.start();
+            File input = new File(dir, jobName.toLowerCase() + ".txt");
+            BenchmarkData.writeLines(input.getAbsolutePath(), generateInput());
+            long inputBytes = input.length();
+            System.out.println(jobName + ": " + inputLines + " lines, " + formatMB(inputBytes) + " MB, " +
+                               slaveAmount + " DFS slaves, " + taskTrackerAmount + " task trackers x " +
+                               mapperSlots + " mapper slots, " + mapperAmount + " mappers, " +
+                               reducerAmount + " reducers");
+
+            long start = System.currentTimeMillis();
+            cluster.loadText(input.getAbsolutePath(), getReplicas(), lineCount);
+            report("load", System.currentTimeMillis() - start, inputBytes);
+
+            for(int i = 0; i < runs; i++){
+                System.out.println("run " + (i + 1) + ":");
+                if(!runJob(cluster, input.getName(), "output_" + i, inputBytes)){
+                    System.out.println("job failed");
+                    break;
+                }
+            }
+        } finally {
+            cluster.shutdown();
+        }
+    }
+
+    private boolean runJob(MiniCluster cluster, String input, String output, long inputBytes)
+            throws Exception {
+        AbstractMapReduce mr = newMapReduce();
+        List<String> args = new ArrayList<String>();
+        args.add(input);
+        args.add(output);
+        args.add("-n");
+        args.add(jobName);
+        args.add("-m");
+        args.add(String.valueOf(mapperAmount));
+        args.add("-r");
+        args.add(String.valueOf(reducerAmount));
+        args.add("-d");
+        args.add(String.valueOf(getReplicas()));
+        args.add("-l");
+        args.add(String.valueOf(lineCount));
+        args.addAll(jobArgs);
+        new JCommander(mr, args.toArray(new String[args.size()]));
+        JobConfig jobConfig = mr.getJobConfig();
+
+        long start = System.currentTimeMillis();
+        JobInfo job = cluster.waitForJob(cluster.submitJob(jobConfig));
+        long end = System.currentTimeMillis();
+        if(job.getStatus() != JobStatus.SUCCEED){
+            return false;
+        }
+        long mapEnd = start;
+        for(MapperTask task : job.getMapperTasks()){
+            mapEnd = Math.max(mapEnd, task.getFinishTime());
+        }
+        long reduceEnd = mapEnd;
+        for(ReducerTask task : job.getReducerTasks()){
+            reduceEnd = Math.max(reduceEnd, task.getFinishTime());
+        }
+        report("map", mapEnd - start, inputBytes);
+        report("reduce", reduceEnd - mapEnd, -1);
+        report("total", end - start, inputBytes);
+        System.out.println(String.format("  %-8s %10.0f lines/s", "", inputLines * 1000.0 / Math.max(1, end - start)));
+        return true;
+    }
+
+    private String[] generateInput(){
+        if(jobName.equals(GraphDegree.class.getSimpleName())){
+            return BenchmarkData.edges(inputLines, GRAPH_NODES, BenchmarkData.SEED);
+        }
+        return BenchmarkData.lines(inputLines, BenchmarkData.SEED);
+    }
+
+    private AbstractMapReduce newMapReduce(){
+        if(jobName.equals(GraphDegree.class.getSimpleName())){
+            return new GraphDegree();
+        } else if(jobName.equals(WordCount.class.getSimpleName())){
+            return new WordCount();
+        }
+        throw new IllegalArgumentException("Unknown job " + jobName);
+    }
+
+    private int getReplicas(){
+        return Math.min(slaveAmount, DFSConstants.DEFAULT_REPLICA_NUMBER);
+    }
+
+    /**
+     * Print the wall time of phase, and the throughput if bytes is
+     * not negative.
+     */
+    private void report(String phase, long millis, long bytes){
+        String line = String.format("  %-8s %8.2f s", phase, millis / 1000.0);
+        if(bytes >= 0){
+            line += String.format(" %10.2f MB/s", bytes / 1048576.0 * 1000.0 / Math.max(1, millis));
+        }
+        System.out.println(line);
+    }
+
+    private String formatMB(long bytes){
+        return String.format("%.2f", bytes / 1048576.0);
+    }
+
+    public boolean needHelp(){
+        return help;
+    }
+
+    public static void main(String[] args)
+            throws Exception {
+        ClusterBenchmark benchmark = new ClusterBenchmark();
+        JCommander commander = new JCommander(benchmark, args);
+        commander.setProgramName("cluster-benchmark");
+        if(benchmark.needHelp()){
+            commander.usage();
+        } else {
+            benchmark.run();
+            System.exit(0);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import DFSFileReader;
+import FileBlock;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark reading a DFS file line by line with DFSFileReader, which
+ * is how every mapper reads its input. The file is loaded into a DFS
+ * of one slave running in the benchmark JVM, so the chunks go through
+ * RMI but not over the network.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DFSFileReaderBenchmark {
+    private static final String FILE_NAME = "benchmark_input.txt";
+    private static final int LINES = 200000;
+    private static final int LINES_PER_CHUNK = 20000;
+    private static final int READ_SIZE = 1 << 20;
+
+    @Param({"0", "2"})
+    private int readAhead;
+
+    private File dir;
+    private MiniCluster cluster;
+
+    @Setup
+    public void setup()
+            throws Exception {
+        dir = BenchmarkData.createTempDir("simplemr_dfs_");
+        cluster = new MiniCluster(dir, 1, 0);
+        cluster.start();
+        File input = new File(dir, FILE_NAME);
+        BenchmarkData.writeLines(input.getAbsolutePath(), BenchmarkData.lines(LINES, BenchmarkData.SEED));
+        cluster.loadText(input.getAbsolutePath(), 1, LINES_PER_CHUNK);
+    }
+
+    @TearDown
+    public void tearDown()
+            throws Exception {
+        cluster.shutdown();
+    }
+
+    @Benchmark
+    public long readLine()
+            throws Exception {
+        DFSFileReader reader = new DFSFileReader(cluster.getHost(), cluster.getRegistryPort(),
+                                                 new FileBlock(FILE_NAME, 0, -1), readAhead, READ_SIZE);
+        reader.open();
+        long length = 0;
+        try {
+            String line;
+            while((line = reader.readLine()) != null){
+                length += line.length();
+            }
+        } finally {
+            reader.close();
+        }
+        return length;
+    }
+}
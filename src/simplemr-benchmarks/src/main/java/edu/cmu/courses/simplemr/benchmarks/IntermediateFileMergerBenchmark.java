@@ -0,0 +1,59 @@
+import Constants;
+import IntermediateFileMerger;
+import IntermediateFileWriter;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark merging sorted intermediate files with IntermediateFileMerger
+ * and the default merge factor. The same records are dealt out to more
+ * or fewer files, so the cost of a wider merge, and of the passes to
+ * disk it needs past the merge factor, is measured on the same data.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IntermediateFileMergerBenchmark {
+    private static final int RECORDS = 500000;
+
+    @Param({"2", "16", "64"})
+    private int files;
+
+    private File dir;
+    private List<String> sortedFiles;
+    private String outputFile;
+
+    @Setup
+    public void setup()
+            throws IOException {
+        dir = BenchmarkData.createTempDir("simplemr_merge_");
+        sortedFiles = BenchmarkData.writeIntermediateFiles(dir, BenchmarkData.words(RECORDS, BenchmarkData.SEED), files);
+        outputFile = new File(dir, "merged").getAbsolutePath();
+    }
+
+    @TearDown
+    public void tearDown()
+            throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public long merge()
+            throws IOException {
+        IntermediateFileMerger.merge(sortedFiles, new IntermediateFileWriter(outputFile),
+                                     Constants.DEFAULT_MERGE_FACTOR);
+        return new File(outputFile).length();
+    }
+}
@@ -0,0 +1,77 @@
+import DataType;
+import HashPartitioner;
+import WordCount;
+import MapOutputBuffer;
+import MapperTask;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the map output path of a mapper task: the lines are mapped
+ * by WordCount into a MapOutputBuffer, which is closed to write the
+ * output files. With the small buffer the records are spilled and
+ * merged, with the large one they are sorted in memory only.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapOutputBufferBenchmark {
+    private static final int LINES = 100000;
+    private static final int REDUCERS = 4;
+
+    @Param({"1", "64"})
+    private int bufferSize;
+
+    @Param({"true", "false"})
+    private boolean combine;
+
+    private File dir;
+    private String[] lines;
+    private WordCount mr;
+    private HashPartitioner partitioner;
+
+    @Setup
+    public void setup()
+            throws IOException {
+        dir = BenchmarkData.createTempDir("simplemr_map_");
+        lines = BenchmarkData.lines(LINES, BenchmarkData.SEED);
+        mr = new WordCount();
+        partitioner = new HashPartitioner();
+    }
+
+    @TearDown
+    public void tearDown()
+            throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public int mapOutput()
+            throws IOException {
+        MapperTask task = new MapperTask(0, null, REDUCERS);
+        task.setOutputDir(dir.getAbsolutePath());
+        task.setBufferSize(bufferSize);
+        task.setCombinerEnabled(combine);
+        task.setKeyType(DataType.STRING);
+        task.setValueType(DataType.LONG);
+        task.setIndexedOutput(true);
+        task.createTaskFolder();
+        MapOutputBuffer buffer = new MapOutputBuffer(task, mr, partitioner);
+        for(String line : lines){
+            mr.map(null, line, buffer);
+        }
+        buffer.close();
+        return buffer.getSpillCount();
+    }
+}
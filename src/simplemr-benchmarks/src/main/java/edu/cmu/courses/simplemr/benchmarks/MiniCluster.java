@@ -0,0 +1,184 @@
+import com.beust.jcommander.JCommander;
+import Constants;
+import Utils;
+import DFSClient;
+import DFSMaster;
+import DFSSlave;
+import JobConfig;
+import JobInfo;
+import JobStatus;
+import JobTracker;
+import MapReduceConstants;
+import TaskTracker;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+
+/**
+ * A whole SimpleMR cluster running in one JVM: an RMI registry, a DFS
+ * master, slaveAmount DFS slaves, a job tracker and taskTrackerAmount
+ * task trackers. The registry and file servers listen on free ports,
+ * all the services are bound to the same registry, and every component
+ * keeps its files in its own folder under the given directory.
+ *
+ * The components can't be stopped, so shutdown() only unbinds the
+ * registry and deletes the files, and a JVM should start only one
+ * mini cluster.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class MiniCluster {
+    private static final long DFS_HEARTBEAT_PERIOD = 200;
+    private static final long JOB_POLL_PERIOD = 50;
+
+    private File dir;
+    private int slaveAmount;
+    private int taskTrackerAmount;
+    private int mapperSlots;
+    private long heartbeatPeriod;
+    private String host;
+    private int registryPort;
+    private Registry registry;
+    private JobTracker jobTracker;
+    private DFSClient dfsClient;
+
+    public MiniCluster(File dir, int slaveAmount, int taskTrackerAmount){
+        this.dir = dir;
+        this.slaveAmount = slaveAmount;
+        this.taskTrackerAmount = taskTrackerAmount;
+        this.mapperSlots = MapReduceConstants.DEFAULT_MAPPER_SLOTS;
+        this.heartbeatPeriod = Constants.DEFAULT_HEARTBEAT_PERIOD;
+    }
+
+    public void start()
+            throws Exception {
+        host = Utils.getHost();
+        registryPort = getFreePort();
+        registry = LocateRegistry.createRegistry(registryPort);
+        startDFS();
+        startMapReduce();
+    }
+
+    public void shutdown()
+            throws IOException {
+        UnicastRemoteObject.unexportObject(registry, true);
+        FileUtils.deleteDirectory(dir);
+    }
+
+    /**
+     * Load a local text file into DFS, lineCount lines a chunk.
+     */
+    public void loadText(String file, int replicas, int lineCount)
+            throws IOException {
+        if(!dfsClient.writeText(file, replicas, lineCount)){
+            throw new IOException("can't load " + file + " into DFS");
+        }
+    }
+
+    public int submitJob(JobConfig jobConfig){
+        return jobTracker.submitJob(jobConfig);
+    }
+
+    /**
+     * Wait until the job succeeds or fails.
+     */
+    public JobInfo waitForJob(int jobId)
+            throws InterruptedException {
+        JobInfo job = jobTracker.getJob(jobId);
+        while(true){
+            JobStatus status = job.checkJobStatus();
+            if(status == JobStatus.SUCCEED || status == JobStatus.FAILED){
+                return job;
+            }
+            Thread.sleep(JOB_POLL_PERIOD);
+        }
+    }
+
+    public String getHost(){
+        return host;
+    }
+
+    public int getRegistryPort(){
+        return registryPort;
+    }
+
+    public DFSClient getDFSClient(){
+        return dfsClient;
+    }
+
+    public int getSlaveAmount(){
+        return slaveAmount;
+    }
+
+    public void setMapperSlots(int mapperSlots){
+        this.mapperSlots = mapperSlots;
+    }
+
+    public void setHeartbeatPeriod(long heartbeatPeriod){
+        this.heartbeatPeriod = heartbeatPeriod;
+    }
+
+    private void startDFS()
+            throws Exception {
+        DFSMaster master = new DFSMaster();
+        new JCommander(master, "-rp", String.valueOf(registryPort),
+                       "-l", getPath("dfs-master", "edit.log"));
+        master.start();
+        for(int i = 0; i < slaveAmount; i++){
+            DFSSlave slave = new DFSSlave();
+            new JCommander(slave, "-mh", host, "-mp", String.valueOf(registryPort),
+                           "-rp", String.valueOf(registryPort), "-n", "dfs-slave-" + i,
+                           "-b", String.valueOf(DFS_HEARTBEAT_PERIOD),
+                           "-d", getPath("dfs-slave", null));
+            slave.start();
+        }
+        Thread.sleep(2 * DFS_HEARTBEAT_PERIOD);
+        dfsClient = new DFSClient(host, registryPort);
+        dfsClient.connect();
+    }
+
+    private void startMapReduce()
+            throws Exception {
+        jobTracker = new JobTracker();
+        new JCommander(jobTracker, "-dh", host, "-dp", String.valueOf(registryPort),
+                       "-rp", String.valueOf(registryPort), "-fp", String.valueOf(getFreePort()),
+                       "-t", getPath("jobtracker", null));
+        jobTracker.start();
+        for(int i = 0; i < taskTrackerAmount; i++){
+            TaskTracker taskTracker = new TaskTracker();
+            new JCommander(taskTracker, "-dh", host, "-dp", String.valueOf(registryPort),
+                           "-jh", host, "-jp", String.valueOf(registryPort),
+                           "-rp", String.valueOf(registryPort), "-fp", String.valueOf(getFreePort()),
+                           "-b", String.valueOf(heartbeatPeriod), "-ms", String.valueOf(mapperSlots),
+                           "-t", getPath("tasktracker-" + i, null));
+            taskTracker.start();
+        }
+        Thread.sleep(2 * heartbeatPeriod);
+    }
+
+    private String getPath(String folder, String file){
+        File path = new File(dir, folder);
+        path.mkdirs();
+        if(file != null){
+            path = new File(path, file);
+        }
+        return path.getAbsolutePath();
+    }
+
+    private static int getFreePort()
+            throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import Constants;
+import DataType;
+import IntermediateFileMerger;
+import IntermediateRecordReader;
+import IntermediateValueIterator;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the input path of a reducer: the sorted files fetched from
+ * the mappers are merged as a stream, and the key groups are iterated
+ * with IntermediateValueIterator, summing the counts like WordCount.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReduceInputBenchmark {
+    private static final int RECORDS = 500000;
+
+    @Param({"2", "16", "64"})
+    private int files;
+
+    private File dir;
+    private List<String> sortedFiles;
+
+    @Setup
+    public void setup()
+            throws IOException {
+        dir = BenchmarkData.createTempDir("simplemr_reduce_");
+        sortedFiles = BenchmarkData.writeIntermediateFiles(dir, BenchmarkData.words(RECORDS, BenchmarkData.SEED), files);
+    }
+
+    @TearDown
+    public void tearDown()
+            throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Benchmark
+    public long reduce()
+            throws IOException {
+        IntermediateRecordReader reader = IntermediateFileMerger.open(sortedFiles, Constants.DEFAULT_MERGE_FACTOR);
+        try {
+            IntermediateValueIterator values = new IntermediateValueIterator(reader, DataType.LONG);
+            long sum = 0;
+            while(values.nextKey()){
+                String key = DataType.STRING.decode(values.getKey(), 0, values.getKeyLength());
+                long count = 0;
+                while(values.hasNext()){
+                    count += values.nextLong();
+                }
+                sum += key.length() + count;
+            }
+            return sum;
+        } finally {
+            reader.close();
+        }
+    }
+}
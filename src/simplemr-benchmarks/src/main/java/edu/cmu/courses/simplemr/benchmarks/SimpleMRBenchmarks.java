@@ -0,0 +1,28 @@
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the GC profiler, so the allocation rate and
+ * GC time are reported along with the time of every benchmark. The
+ * arguments are regular expressions of the benchmarks to run, all of
+ * them by default.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class SimpleMRBenchmarks {
+    public static void main(String[] args)
+            throws RunnerException {
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true);
+        for(String arg : args){
+            builder.include(arg);
+        }
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,37 @@
+import Utils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark splitting reducer output lines into keys and values
+ * with Utils.splitLine().
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SplitLineBenchmark {
+    private static final int LINES = 10000;
+
+    private String[] lines;
+
+    @Setup
+    public void setup(){
+        lines = BenchmarkData.keyValueLines(LINES, BenchmarkData.SEED);
+    }
+
+    @Benchmark
+    public void splitLine(Blackhole blackhole){
+        for(String line : lines){
+            blackhole.consume(Utils.splitLine(line));
+        }
+    }
+}
@@ -1,3 +1,5 @@
+import java.nio.charset.Charset;
+
 /**
  * Define some parameters for MapReduce.
  *
@@ -19,5 +21,12 @@ public class Constants {
     public static final String TASKS_FILE_URI = "tasks";
     public static final String MAPREDUCE_DELIMITER_REGEX = "\\s+";
     public static final String MAPREDUCE_DELIMITER = "\t";
+    public static final int DEFAULT_MAPPER_BUFFER_SIZE = 64;
+    public static final int MAX_MAPPER_BUFFER_BYTES = Integer.MAX_VALUE - 8;
+    public static final int DEFAULT_READ_AHEAD_DEPTH = 1;
+    public static final int DEFAULT_READ_BUFFER_SIZE = 4096;
+    public static final String DEFAULT_POOL = "default";
+    public static final int DEFAULT_MERGE_FACTOR = 10;
+    public static final Charset CHARSET = Charset.forName("UTF-8");
 
 }
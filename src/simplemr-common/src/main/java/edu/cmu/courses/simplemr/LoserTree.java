@@ -0,0 +1,96 @@
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The tournament tree of losers to merge k sorted sources. Every inner
+ * node keeps the loser of the match below it, and the winner goes up,
+ * so after the smallest source moves to its next element, only the
+ * matches on its path to the root are replayed, log k comparisons
+ * against the stored losers. The sources are compared by their current
+ * elements, and equal ones are taken in the order of the sources.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class LoserTree<T> {
+    private List<T> sources;
+    private Comparator<? super T> comparator;
+    private int[] tree;
+    private boolean[] exhausted;
+    private int size;
+    private int remaining;
+
+    /**
+     * @param sources the sources at their first elements, all of them
+     *                having at least one element
+     */
+    public LoserTree(List<T> sources, Comparator<? super T> comparator){
+        this.sources = sources;
+        this.comparator = comparator;
+        this.size = sources.size();
+        this.remaining = size;
+        this.exhausted = new boolean[size];
+        this.tree = new int[Math.max(1, size)];
+        if(size == 0){
+            return;
+        }
+        int[] winners = new int[2 * size];
+        for(int i = 0; i < size; i++){
+            winners[size + i] = i;
+        }
+        for(int node = size - 1; node >= 1; node--){
+            int a = winners[2 * node];
+            int b = winners[2 * node + 1];
+            if(less(a, b)){
+                winners[node] = a;
+                tree[node] = b;
+            } else {
+                winners[node] = b;
+                tree[node] = a;
+            }
+        }
+        tree[0] = size == 1 ? 0 : winners[1];
+    }
+
+    public boolean isEmpty(){
+        return remaining == 0;
+    }
+
+    /**
+     * Get the source with the smallest current element.
+     */
+    public T top(){
+        return sources.get(tree[0]);
+    }
+
+    /**
+     * Replay the matches of the top source after it has moved
+     * to its next element, or run out of elements.
+     *
+     * @param hasNext false if the top source has no more elements
+     */
+    public void update(boolean hasNext){
+        int winner = tree[0];
+        if(!hasNext){
+            exhausted[winner] = true;
+            remaining--;
+        }
+        for(int node = (winner + size) / 2; node >= 1; node /= 2){
+            if(less(tree[node], winner)){
+                int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+    }
+
+    private boolean less(int a, int b){
+        if(exhausted[a] || exhausted[b]){
+            return !exhausted[a] || (exhausted[b] && a < b);
+        }
+        int result = comparator.compare(sources.get(a), sources.get(b));
+        return result < 0 || (result == 0 && a < b);
+    }
+}
@@ -1,20 +1,18 @@
 import Pair;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
 
 import java.io.*;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.PriorityQueue;
 
 /**
  * Defined some often use utilities when doing MapReduce.
@@ -24,6 +22,8 @@ import java.util.PriorityQueue;
  */
 
 public class Utils {
+    private static final CloseableHttpClient HTTP_CLIENT = HttpClients.createDefault();
+
     public static String getHost()
             throws UnknownHostException {
         InetAddress inetAddress = InetAddress.getLocalHost();
@@ -34,7 +34,6 @@ public class Utils {
             throws IOException {
         InputStream inputStream = cls.getResourceAsStream(cls.getSimpleName() + ".class");
 
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         HttpPost post = new HttpPost("http://" + host + ":" + port + "/" + Constants.CLASS_FILE_URI);
 
         MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create();
@@ -44,15 +43,31 @@ public class Utils {
         HttpEntity entity = entityBuilder.build();
         post.setEntity(entity);
 
-        httpClient.execute(post);
+        try {
+            CloseableHttpResponse response = HTTP_CLIENT.execute(post);
+            try {
+                EntityUtils.consume(response.getEntity());
+            } finally {
+                response.close();
+            }
+        } finally {
+            inputStream.close();
+        }
     }
 
+    /**
+     * Get the file on the file server. All the requests share one client
+     * and its connections, so close the stream to return the connection.
+     */
     public static InputStream getRemoteFile(String host, int port, String filePath)
             throws IOException {
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         HttpGet get = new HttpGet("http://" + host + ":" + port + "/" + filePath);
-        HttpResponse response = httpClient.execute(get);
+        CloseableHttpResponse response = HTTP_CLIENT.execute(get);
         HttpEntity entity = response.getEntity();
+        if(response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || entity == null){
+            response.close();
+            throw new IOException("failed to get " + get.getURI());
+        }
         return entity.getContent();
     }
 
@@ -68,6 +83,56 @@ public class Utils {
         }
     }
 
+    /**
+     * Encode the string in UTF-8 into the buffer without allocating
+     * a byte array. The buffer should have at least 3 bytes for every
+     * char left after the offset.
+     *
+     * @return the offset after the encoded bytes
+     */
+    public static int encodeUTF8(String str, byte[] buffer, int offset){
+        int length = str.length();
+        for(int i = 0; i < length; i++){
+            char ch = str.charAt(i);
+            if(ch < 0x80){
+                buffer[offset++] = (byte) ch;
+            } else if(ch < 0x800){
+                buffer[offset++] = (byte) (0xC0 | (ch >> 6));
+                buffer[offset++] = (byte) (0x80 | (ch & 0x3F));
+            } else if(ch < Character.MIN_SURROGATE || ch > Character.MAX_SURROGATE){
+                buffer[offset++] = (byte) (0xE0 | (ch >> 12));
+                buffer[offset++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+                buffer[offset++] = (byte) (0x80 | (ch & 0x3F));
+            } else if(Character.isHighSurrogate(ch) && i + 1 < length &&
+                      Character.isLowSurrogate(str.charAt(i + 1))){
+                int codePoint = Character.toCodePoint(ch, str.charAt(++i));
+                buffer[offset++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[offset++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                buffer[offset++] = '?';
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Compare two byte ranges lexicographically as unsigned bytes,
+     * which is the same order as comparing the UTF-8 strings by code points.
+     */
+    public static int compareBytes(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2){
+        int length = Math.min(l1, l2);
+        for(int i = 0; i < length; i++){
+            int a = b1[s1 + i] & 0xFF;
+            int b = b2[s2 + i] & 0xFF;
+            if(a != b){
+                return a - b;
+            }
+        }
+        return l1 - l2;
+    }
+
     public static Pair<String, String> splitLine(String line){
         String[] words = line.split(Constants.MAPREDUCE_DELIMITER_REGEX, 2);
         if(words.length < 2){
@@ -77,43 +142,16 @@ public class Utils {
         }
     }
 
-    public static void mergeSortedFiles(List<String> files, String outputFile)
-            throws IOException{
-        List<BufferedReader> readers = new ArrayList<BufferedReader>();
-        Comparator<Pair<String, BufferedReader>> comparator = new Comparator<Pair<String, BufferedReader>>() {
-            @Override
-            public int compare(Pair<String, BufferedReader> o1, Pair<String, BufferedReader> o2) {
-                return o1.getKey().compareTo(o2.getKey());
-            }
-        };
-        PriorityQueue<Pair<String, BufferedReader>> lineQueues =
-                new PriorityQueue<Pair<String, BufferedReader>>(10, comparator);
-        for(int i = 0; i < files.size(); i++){
-            BufferedReader reader = new BufferedReader(new FileReader(files.get(i)));
-            String line = reader.readLine();
-            if(line != null){
-                lineQueues.add(new Pair<String, BufferedReader>(line, reader));
-                readers.add(reader);
-            } else {
-                reader.close();
-            }
-        }
-        BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
-        while(lineQueues.size() > 0){
-            Pair<String, BufferedReader> entry = lineQueues.poll();
-            writer.write(entry.getKey());
-            writer.newLine();
-            if(readers.contains(entry.getValue())){
-                String line = entry.getValue().readLine();
-                if(line != null){
-                    lineQueues.offer(new Pair<String, BufferedReader>(line, entry.getValue()));
-                } else {
-                    entry.getValue().close();
-                    readers.remove(entry.getValue());
-                }
-            }
+    /**
+     * Get how many files the first pass of a merge should take, so that
+     * every later pass merges exactly fanIn files and the small files
+     * merged in the first pass are not read again and again.
+     */
+    public static int getMergePassSize(int fileCount, int fanIn){
+        if(fileCount <= fanIn){
+            return fileCount;
         }
-        writer.flush();
-        writer.close();
+        int mod = (fileCount - 1) % (fanIn - 1);
+        return mod == 0 ? fanIn : mod + 1;
     }
 }
@@ -18,4 +18,5 @@ public class DFSConstants {
             System.getProperty("file.separator") +
             "dfs_slave_data";
     public static final String CHUNK_PREFIX = "CHUNK_";
+    public static final String INDEX_SUFFIX = ".idx";
 }
@@ -18,7 +18,8 @@ public class DFSLoadFile {
     @Parameter(required = true, description = "filename")
     private List<String> fileNames;
 
-    @Parameter(names = {"-t", "--text"}, description = "Set this if the file is a text file")
+    @Parameter(names = {"-t", "--text"}, arity = 1, description = "Whether the file is a text file, " +
+            "set false to load a binary file by block size")
     private boolean isText = true;
 
     @Parameter(names = {"-rh", "--master-registry-host"}, description = "The host of master registry service")
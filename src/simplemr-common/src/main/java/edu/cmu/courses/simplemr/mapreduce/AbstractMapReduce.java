@@ -4,6 +4,7 @@ import edu.cmu.courses.simplemr.Constants;
 import DFSConstants;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -42,9 +43,61 @@ public abstract class AbstractMapReduce implements MapReduce {
     @Parameter(names = {"-l", "--line-count"}, description = "the count of lines per file chunk in dfs")
     protected int lineCount = DFSConstants.DEFAULT_LINE_COUNT;
 
+    @Parameter(names = {"-c", "--combine"}, arity = 1, description = "whether to run the combine function " +
+            "on the output of every mapper")
+    protected boolean combine = false;
+
+    @Parameter(names = {"-b", "--buffer-size"}, description = "the memory budget of mapper output before spilling (MB)")
+    protected int mapperBufferSize = Constants.DEFAULT_MAPPER_BUFFER_SIZE;
+
+    @Parameter(names = {"-p", "--partitioner"}, description = "the class name of partitioner, " +
+            "it could be the MapReduce class itself if it implements Partitioner")
+    protected String partitionerClassName = HashPartitioner.class.getName();
+
+    @Parameter(names = {"-z", "--compress-level"}, description = "the deflate level (1-9) of mapper output " +
+            "sent to reducers, 0 for no compression")
+    protected int compressionLevel = 0;
+
+    @Parameter(names = {"-ra", "--read-ahead"}, description = "the number of input reads prefetched " +
+            "by every mapper, 0 for no read-ahead")
+    protected int readAheadDepth = Constants.DEFAULT_READ_AHEAD_DEPTH;
+
+    @Parameter(names = {"-rb", "--read-buffer"}, description = "the max size of every input read of mapper (KB)")
+    protected int readBufferSize = Constants.DEFAULT_READ_BUFFER_SIZE;
+
+    @Parameter(names = {"-f", "--input-format"}, description = "the format of input records, " +
+            "LINE, KEY_VALUE, FIXED_WIDTH or LENGTH_PREFIXED")
+    protected InputFormat inputFormat = InputFormat.LINE;
+
+    @Parameter(names = {"-w", "--record-width"}, description = "the length of every record in FIXED_WIDTH input (bytes)")
+    protected int recordLength = 0;
+
+    @Parameter(names = {"-s", "--speculative"}, arity = 1, description = "whether to run backup attempts " +
+            "of straggling tasks, set false if the map or reduce function has side effects")
+    protected boolean speculative = true;
+
+    @Parameter(names = {"-pl", "--pool"}, description = "the scheduling pool of the job, " +
+            "whose weight is set on the job tracker")
+    protected String pool = Constants.DEFAULT_POOL;
+
+    @Parameter(names = {"-mf", "--merge-factor"}, description = "the max number of sorted files every reducer " +
+            "merges at once while fetching the mapper output")
+    protected int mergeFactor = Constants.DEFAULT_MERGE_FACTOR;
+
+    @Parameter(names = {"-io", "--indexed-output"}, arity = 1, description = "whether every mapper writes " +
+            "one data file with an index of partitions, instead of a file per reducer")
+    protected boolean indexedOutput = true;
+
     @Parameter(names = {"-h", "--help"}, help = true)
     private boolean help = false;
 
+    /**
+     * The types of map output keys and values, applications
+     * emitting numbers set them in the constructor.
+     */
+    protected DataType keyType = DataType.STRING;
+    protected DataType valueType = DataType.STRING;
+
     public JobConfig getJobConfig(){
         JobConfig jobConfig = new JobConfig();
         if(files.size() > 0){
@@ -59,11 +112,66 @@ public abstract class AbstractMapReduce implements MapReduce {
         jobConfig.setMaxAttemptCount(maxAttemptCount);
         jobConfig.setOutputFileReplica(replicas);
         jobConfig.setOutputFileBlockSize(lineCount);
+        jobConfig.setCombinerEnabled(combine);
+        jobConfig.setMapperBufferSize(mapperBufferSize);
+        jobConfig.setPartitionerClassName(partitionerClassName);
+        jobConfig.setKeyType(keyType);
+        jobConfig.setValueType(valueType);
+        jobConfig.setCompressionLevel(compressionLevel);
+        jobConfig.setReadAheadDepth(readAheadDepth);
+        jobConfig.setReadBufferSize(readBufferSize);
+        jobConfig.setInputFormat(inputFormat);
+        jobConfig.setRecordLength(recordLength);
+        jobConfig.setSpeculative(speculative);
+        jobConfig.setPool(pool);
+        jobConfig.setMergeFactor(mergeFactor);
+        jobConfig.setIndexedOutput(indexedOutput);
         jobConfig.setClassName(this.getClass().getName());
         jobConfig.validate();
         return jobConfig;
     }
 
+    /**
+     * The default map function of binary records decodes the record
+     * as a UTF-8 string and maps it as the value with an empty key.
+     * Applications reading binary input override it to parse the
+     * bytes directly.
+     */
+    @Override
+    public void map(byte[] record, int offset, int length, OutputCollector collector) {
+        map("", new String(record, offset, length, Constants.CHARSET), collector);
+    }
+
+    /**
+     * The default combine function passes every value through unchanged.
+     * Applications whose reduce function is associative and commutative
+     * can override it and enable the combiner to shrink the map output.
+     */
+    @Override
+    public void combine(String key, Iterator<String> values, OutputCollector collector) {
+        while(values.hasNext()){
+            collector.collect(key, values.next());
+        }
+    }
+
+    /**
+     * Read the next value as a number, without parsing
+     * if the values are kept in binary.
+     */
+    protected static long nextLong(Iterator<String> values){
+        if(values instanceof ValueIterator){
+            return ((ValueIterator) values).nextLong();
+        }
+        return Long.parseLong(values.next());
+    }
+
+    protected static double nextDouble(Iterator<String> values){
+        if(values instanceof ValueIterator){
+            return ((ValueIterator) values).nextDouble();
+        }
+        return Double.parseDouble(values.next());
+    }
+
     public boolean needHelp(){
         return help;
     }
@@ -0,0 +1,157 @@
+import edu.cmu.courses.simplemr.Constants;
+import edu.cmu.courses.simplemr.Utils;
+
+/**
+ * The type of keys or values of a MapReduce job. Numeric types
+ * are kept as fixed-width binary in the map output buffer. The
+ * encoding preserves the order, so comparing the encoded bytes
+ * orders the keys numerically, and the application doesn't need
+ * to pad the numbers into strings.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public enum DataType {
+    STRING, INT, LONG, DOUBLE;
+
+    /**
+     * The max bytes of a number encoded in any type,
+     * including the decimal string form.
+     */
+    public static final int MAX_NUMBER_BYTES = 32;
+
+    public boolean isNumeric(){
+        return this != STRING;
+    }
+
+    public int encode(String value, byte[] buffer, int offset){
+        switch (this){
+            case INT:
+                return encodeInt(Integer.parseInt(value), buffer, offset);
+            case LONG:
+                return encodeLong(Long.parseLong(value), buffer, offset);
+            case DOUBLE:
+                return encodeDouble(Double.parseDouble(value), buffer, offset);
+            default:
+                return Utils.encodeUTF8(value, buffer, offset);
+        }
+    }
+
+    public int encode(long value, byte[] buffer, int offset){
+        switch (this){
+            case INT:
+                if(value < Integer.MIN_VALUE || value > Integer.MAX_VALUE){
+                    throw new IllegalArgumentException(value + " is out of the range of INT");
+                }
+                return encodeInt((int) value, buffer, offset);
+            case LONG:
+                return encodeLong(value, buffer, offset);
+            case DOUBLE:
+                return encodeDouble(value, buffer, offset);
+            default:
+                return Utils.encodeUTF8(Long.toString(value), buffer, offset);
+        }
+    }
+
+    public int encode(double value, byte[] buffer, int offset){
+        switch (this){
+            case INT:
+            case LONG:
+                if(value != Math.rint(value)){
+                    throw new IllegalArgumentException(value + " is not an integer");
+                }
+                return encode((long) value, buffer, offset);
+            case DOUBLE:
+                return encodeDouble(value, buffer, offset);
+            default:
+                return Utils.encodeUTF8(Double.toString(value), buffer, offset);
+        }
+    }
+
+    public String decode(byte[] buffer, int offset, int length){
+        switch (this){
+            case INT:
+                return Integer.toString(decodeInt(buffer, offset));
+            case LONG:
+                return Long.toString(decodeLong(buffer, offset));
+            case DOUBLE:
+                return Double.toString(decodeDouble(buffer, offset));
+            default:
+                return new String(buffer, offset, length, Constants.CHARSET);
+        }
+    }
+
+    public long decodeAsLong(byte[] buffer, int offset, int length){
+        switch (this){
+            case INT:
+                return decodeInt(buffer, offset);
+            case LONG:
+                return decodeLong(buffer, offset);
+            case DOUBLE:
+                return (long) decodeDouble(buffer, offset);
+            default:
+                return Long.parseLong(decode(buffer, offset, length));
+        }
+    }
+
+    public double decodeAsDouble(byte[] buffer, int offset, int length){
+        switch (this){
+            case INT:
+                return decodeInt(buffer, offset);
+            case LONG:
+                return decodeLong(buffer, offset);
+            case DOUBLE:
+                return decodeDouble(buffer, offset);
+            default:
+                return Double.parseDouble(decode(buffer, offset, length));
+        }
+    }
+
+    public static int encodeInt(int value, byte[] buffer, int offset){
+        value ^= Integer.MIN_VALUE;
+        buffer[offset++] = (byte) (value >>> 24);
+        buffer[offset++] = (byte) (value >>> 16);
+        buffer[offset++] = (byte) (value >>> 8);
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    public static int decodeInt(byte[] buffer, int offset){
+        int value = ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16) |
+                    ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+        return value ^ Integer.MIN_VALUE;
+    }
+
+    public static int encodeLong(long value, byte[] buffer, int offset){
+        value ^= Long.MIN_VALUE;
+        for(int shift = 56; shift >= 0; shift -= 8){
+            buffer[offset++] = (byte) (value >>> shift);
+        }
+        return offset;
+    }
+
+    public static long decodeLong(byte[] buffer, int offset){
+        long value = 0;
+        for(int i = 0; i < 8; i++){
+            value = (value << 8) | (buffer[offset + i] & 0xFF);
+        }
+        return value ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Negative doubles have all their bits flipped and positive doubles
+     * only the sign bit, so the unsigned bytes are in numeric order.
+     */
+    public static int encodeDouble(double value, byte[] buffer, int offset){
+        long bits = Double.doubleToLongBits(value);
+        bits ^= (bits >> 63) | Long.MIN_VALUE;
+        return encodeLong(bits ^ Long.MIN_VALUE, buffer, offset);
+    }
+
+    public static double decodeDouble(byte[] buffer, int offset){
+        long bits = decodeLong(buffer, offset) ^ Long.MIN_VALUE;
+        bits ^= (~bits >> 63) | Long.MIN_VALUE;
+        return Double.longBitsToDouble(bits);
+    }
+}
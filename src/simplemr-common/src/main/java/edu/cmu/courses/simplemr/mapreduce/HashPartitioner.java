@@ -0,0 +1,24 @@
+/**
+ * The default partitioner, spread keys evenly across the
+ * reducers by the hash code of the key. The map output buffer
+ * hashes the serialized bytes of keys instead, so numeric keys
+ * don't need to be formatted to find their partitions.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class HashPartitioner implements Partitioner {
+    @Override
+    public int getPartition(String key, int partitionAmount) {
+        return (key.hashCode() & Integer.MAX_VALUE) % partitionAmount;
+    }
+
+    public int getPartition(byte[] key, int offset, int length, int partitionAmount) {
+        int hash = 1;
+        for(int i = offset; i < offset + length; i++){
+            hash = 31 * hash + key[i];
+        }
+        return (hash & Integer.MAX_VALUE) % partitionAmount;
+    }
+}
@@ -0,0 +1,24 @@
+/**
+ * The format of records in the input file of a job.
+ * LINE passes the first token and the whole line to map,
+ * KEY_VALUE splits every line at the first tab into key and value.
+ * The binary formats pass the raw bytes of every record to map:
+ * FIXED_WIDTH records have the same length set in the job,
+ * LENGTH_PREFIXED records start with their length as a 4-byte int,
+ * so they can't be split and the whole file goes to one mapper.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public enum InputFormat {
+    LINE, KEY_VALUE, FIXED_WIDTH, LENGTH_PREFIXED;
+
+    public boolean isBinary(){
+        return this == FIXED_WIDTH || this == LENGTH_PREFIXED;
+    }
+
+    public boolean isSplittable(){
+        return this != LENGTH_PREFIXED;
+    }
+}
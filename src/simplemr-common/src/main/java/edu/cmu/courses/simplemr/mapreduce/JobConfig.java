@@ -1,3 +1,4 @@
+import edu.cmu.courses.simplemr.Constants;
 import edu.cmu.courses.simplemr.Utils;
 import DFSConstants;
 
@@ -23,17 +24,57 @@ public class JobConfig implements Serializable {
     private int mapperAmount = 0;
     private int reducerAmount = 0;
     private int maxAttemptCount = DEFAULT_ATTEMPT_COUNT;
+    private boolean combinerEnabled = false;
+    private int mapperBufferSize = Constants.DEFAULT_MAPPER_BUFFER_SIZE;
+    private String partitionerClassName = HashPartitioner.class.getName();
+    private DataType keyType = DataType.STRING;
+    private DataType valueType = DataType.STRING;
+    private int compressionLevel = 0;
+    private int readAheadDepth = Constants.DEFAULT_READ_AHEAD_DEPTH;
+    private int readBufferSize = Constants.DEFAULT_READ_BUFFER_SIZE;
+    private InputFormat inputFormat = InputFormat.LINE;
+    private int recordLength = 0;
+    private boolean speculative = true;
+    private String pool = Constants.DEFAULT_POOL;
+    private int mergeFactor = Constants.DEFAULT_MERGE_FACTOR;
+    private boolean indexedOutput = true;
 
     public void validate(){
         Utils.validateString(jobName, "The name of job");
         Utils.validateString(className, "The name of class implemented MapReduce interface");
         Utils.validateString(inputFile, "The name of input file");
         Utils.validateString(outputFile, "The name of output file");
+        Utils.validateString(partitionerClassName, "The name of class implemented Partitioner interface");
+        Utils.validateString(pool, "The name of scheduling pool");
         Utils.validatePositiveInteger(outputFileReplica, "The replica amount of output file");
         Utils.validatePositiveInteger(outputFileBlockSize, "The block size of output file (count by line)");
         Utils.validatePositiveInteger(mapperAmount, "The amount of mappers");
         Utils.validatePositiveInteger(reducerAmount, "The amount of reducers");
         Utils.validatePositiveInteger(maxAttemptCount, "The max attempt count for failed job");
+        Utils.validatePositiveInteger(mapperBufferSize, "The buffer size of mapper output (MB)");
+        if(((long) mapperBufferSize << 20) > Constants.MAX_MAPPER_BUFFER_BYTES){
+            throw new IllegalArgumentException("The buffer size of mapper output should be less than " +
+                                               ((Constants.MAX_MAPPER_BUFFER_BYTES >> 20) + 1) + " MB");
+        }
+        if(keyType == null || valueType == null){
+            throw new IllegalArgumentException("The type of keys and values can't be empty");
+        }
+        if(compressionLevel < 0 || compressionLevel > 9){
+            throw new IllegalArgumentException("The compression level of mapper output should be from 0 to 9");
+        }
+        if(readAheadDepth < 0){
+            throw new IllegalArgumentException("The read-ahead depth of mapper input can't be negative");
+        }
+        Utils.validatePositiveInteger(readBufferSize, "The buffer size of every mapper input read (KB)");
+        if(inputFormat == null){
+            throw new IllegalArgumentException("The input format can't be empty");
+        }
+        if(mergeFactor < 2){
+            throw new IllegalArgumentException("The merge factor of reducer input should be at least 2");
+        }
+        if(inputFormat == InputFormat.FIXED_WIDTH){
+            Utils.validatePositiveInteger(recordLength, "The record length of fixed-width input");
+        }
     }
 
     public int getMaxAttemptCount(){
@@ -107,4 +148,116 @@ public class JobConfig implements Serializable {
     public void setOutputFileBlockSize(int outputFileBlockSize) {
         this.outputFileBlockSize = outputFileBlockSize;
     }
+
+    public boolean isCombinerEnabled() {
+        return combinerEnabled;
+    }
+
+    public void setCombinerEnabled(boolean combinerEnabled) {
+        this.combinerEnabled = combinerEnabled;
+    }
+
+    public int getMapperBufferSize() {
+        return mapperBufferSize;
+    }
+
+    public void setMapperBufferSize(int mapperBufferSize) {
+        this.mapperBufferSize = mapperBufferSize;
+    }
+
+    public String getPartitionerClassName() {
+        return partitionerClassName;
+    }
+
+    public void setPartitionerClassName(String partitionerClassName) {
+        this.partitionerClassName = partitionerClassName;
+    }
+
+    public DataType getKeyType() {
+        return keyType;
+    }
+
+    public void setKeyType(DataType keyType) {
+        this.keyType = keyType;
+    }
+
+    public DataType getValueType() {
+        return valueType;
+    }
+
+    public void setValueType(DataType valueType) {
+        this.valueType = valueType;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getReadAheadDepth() {
+        return readAheadDepth;
+    }
+
+    public void setReadAheadDepth(int readAheadDepth) {
+        this.readAheadDepth = readAheadDepth;
+    }
+
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    public void setReadBufferSize(int readBufferSize) {
+        this.readBufferSize = readBufferSize;
+    }
+
+    public InputFormat getInputFormat() {
+        return inputFormat;
+    }
+
+    public void setInputFormat(InputFormat inputFormat) {
+        this.inputFormat = inputFormat;
+    }
+
+    public int getRecordLength() {
+        return recordLength;
+    }
+
+    public void setRecordLength(int recordLength) {
+        this.recordLength = recordLength;
+    }
+
+    public boolean isSpeculative() {
+        return speculative;
+    }
+
+    public void setSpeculative(boolean speculative) {
+        this.speculative = speculative;
+    }
+
+    public String getPool() {
+        return pool;
+    }
+
+    public void setPool(String pool) {
+        this.pool = pool;
+    }
+
+    public int getMergeFactor() {
+        return mergeFactor;
+    }
+
+    public void setMergeFactor(int mergeFactor) {
+        this.mergeFactor = mergeFactor;
+    }
+
+    public boolean isIndexedOutput() {
+        return indexedOutput;
+    }
+
+    public void setIndexedOutput(boolean indexedOutput) {
+        this.indexedOutput = indexedOutput;
+    }
 }
@@ -12,5 +12,7 @@ import java.util.Iterator;
 
 public interface MapReduce extends Serializable{
     public void map(String key, String value, OutputCollector collector);
+    public void map(byte[] record, int offset, int length, OutputCollector collector);
     public void reduce(String key, Iterator<String> values, OutputCollector collector);
+    public void combine(String key, Iterator<String> values, OutputCollector collector);
 }
@@ -1,53 +1,51 @@
-import java.util.*;
-
 /**
  * The Output Collector is a input of user applications.
- * User add a entry to the result by calling collect().
+ * User add a entry to the result by calling collect(). Where the
+ * entries go is up to the subclass, this class keeps nothing.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
  */
 
-public class OutputCollector {
-    private PriorityQueue<Pair<String, String>> collection;
-    private Set<String> keys;
+public abstract class OutputCollector {
+
+    public abstract void collect(String key, String value);
+
+    /**
+     * Numeric keys and values are formatted to text by default.
+     * The map output buffer overrides them to keep numbers in binary
+     * when the key or value type of the job is numeric. Int keys
+     * and values go through the long versions.
+     */
+    public void collect(long key, String value){
+        collect(Long.toString(key), value);
+    }
+
+    public void collect(double key, String value){
+        collect(Double.toString(key), value);
+    }
+
+    public void collect(String key, long value){
+        collect(key, Long.toString(value));
+    }
 
-    public OutputCollector() {
-        collection = new PriorityQueue<Pair<String, String>>(10, new Comparator<Pair<String, String>>() {
-            @Override
-            public int compare(Pair<String, String> o1, Pair<String, String> o2) {
-                if(o1.getKey().compareTo(o2.getKey()) == 0)
-                    return o1.getValue().compareTo(o2.getValue());
-                return o1.getKey().compareTo(o2.getKey());
-            }
-        });
-        keys = new TreeSet<String>();
+    public void collect(String key, double value){
+        collect(key, Double.toString(value));
     }
 
-    public void collect(String key, String value){
-        collection.add(new Pair<String, String>(key, value));
-        keys.add(key);
+    public void collect(long key, long value){
+        collect(Long.toString(key), Long.toString(value));
     }
 
-    public Iterator<Pair<String, String>> getIterator(){
-        return collection.iterator();
+    public void collect(long key, double value){
+        collect(Long.toString(key), Double.toString(value));
     }
 
-    public int getKeyCount(){
-        return keys.size();
+    public void collect(double key, long value){
+        collect(Double.toString(key), Long.toString(value));
     }
 
-    public TreeMap<String, List<String>> getMap(){
-        TreeMap<String, List<String>> map = new TreeMap<String, List<String>>();
-        for(Pair<String, String> pair : collection){
-            if(map.containsKey(pair.getKey())){
-                map.get(pair.getKey()).add(pair.getValue());
-            } else {
-                List<String> values = new ArrayList<String>();
-                values.add(pair.getValue());
-                map.put(pair.getKey(), values);
-            }
-        }
-        return map;
+    public void collect(double key, double value){
+        collect(Double.toString(key), Double.toString(value));
     }
 }
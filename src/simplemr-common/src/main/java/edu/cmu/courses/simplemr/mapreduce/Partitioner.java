@@ -0,0 +1,14 @@
+import java.io.Serializable;
+
+/**
+ * The Partitioner interface decides which reducer a key of the
+ * mapper output goes to. The same key must always be sent to the
+ * same partition, no matter which mapper collects it.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public interface Partitioner extends Serializable {
+    public int getPartition(String key, int partitionAmount);
+}
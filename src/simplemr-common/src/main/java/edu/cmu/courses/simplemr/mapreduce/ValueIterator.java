@@ -0,0 +1,25 @@
+import java.util.Iterator;
+
+/**
+ * The iterator of values passed to reduce and combine functions.
+ * Besides the text form, values could be read as numbers, which
+ * skips formatting and parsing when the values are kept in binary.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public abstract class ValueIterator implements Iterator<String> {
+    public long nextLong(){
+        return Long.parseLong(next());
+    }
+
+    public double nextDouble(){
+        return Double.parseDouble(next());
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -5,7 +5,6 @@ import Utils;
 import DFSConstants;
 import DFSMasterService;
 import DFSSlaveService;
-import org.apache.commons.lang.ArrayUtils;
 
 import java.io.*;
 import java.net.UnknownHostException;
@@ -13,9 +12,7 @@ import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -94,6 +91,7 @@ public class DFSSlave {
 
     public void write(long chunkId, long offset, int size, byte[] data)
             throws IOException{
+        new File(getIndexPath(chunkId)).delete();
         File file = new File(getFilePath(chunkId));
         RandomAccessFile raf = new RandomAccessFile(file, "rw");
         raf.seek(offset);
@@ -101,24 +99,25 @@ public class DFSSlave {
         raf.close();
     }
 
+    /**
+     * Get the offsets of lines in the chunk. They are served from the
+     * line index of chunk, which is built on the first request. Chunks
+     * are not changed once written, so the index is kept until the chunk
+     * is deleted or written again.
+     */
     public long[] linesOffset(long chunkId)
             throws IOException {
-        File file = new File(getFilePath(chunkId));
-        List<Long> offsets = new ArrayList<Long>();
-        FileInputStream in = new FileInputStream(file);
-        byte ch;
-        byte prevChar = -1;
-        long offset = 0;
-        while((ch = (byte)in.read()) != -1){
-            if(prevChar == -1 || prevChar == '\n'){
-                offsets.add(offset);
+        File indexFile = new File(getIndexPath(chunkId));
+        if(indexFile.exists()){
+            try{
+                return readLineIndex(indexFile);
+            } catch (IOException e){
+                indexFile.delete();
             }
-            offset++;
-            prevChar = ch;
         }
-        Long[] results = new Long[offsets.size()];
-        offsets.toArray(results);
-        return ArrayUtils.toPrimitive(results);
+        long[] offsets = scanLinesOffset(chunkId);
+        writeLineIndex(indexFile, offsets);
+        return offsets;
     }
 
     public void delete(long chunkId){
@@ -126,6 +125,7 @@ public class DFSSlave {
         if(file.exists()){
             file.delete();
         }
+        new File(getIndexPath(chunkId)).delete();
     }
 
     public String getServiceName(){
@@ -134,7 +134,12 @@ public class DFSSlave {
 
     public int getChunkNumber(){
         File file = new File(dataDir);
-        return file.listFiles().length;
+        return file.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return !name.contains(DFSConstants.INDEX_SUFFIX);
+            }
+        }).length;
     }
 
     public boolean needHelp(){
@@ -149,6 +154,97 @@ public class DFSSlave {
         return dataDir + System.getProperty("file.separator") + DFSConstants.CHUNK_PREFIX + chunkId;
     }
 
+    private String getIndexPath(long chunkId){
+        return getFilePath(chunkId) + DFSConstants.INDEX_SUFFIX;
+    }
+
+    private long[] scanLinesOffset(long chunkId)
+            throws IOException {
+        File file = new File(getFilePath(chunkId));
+        long[] offsets = new long[64];
+        int count = 0;
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try{
+            int ch;
+            int prevChar = '\n';
+            long offset = 0;
+            while((ch = in.read()) != -1){
+                if(prevChar == '\n'){
+                    if(count == offsets.length){
+                        offsets = Arrays.copyOf(offsets, 2 * count);
+                    }
+                    offsets[count++] = offset;
+                }
+                offset++;
+                prevChar = ch;
+            }
+        } finally {
+            in.close();
+        }
+        return Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * The line index is the count of lines, followed by the gaps
+     * between the offsets in variable-length bytes, so a chunk of
+     * short lines costs about a byte per line. Every build writes its
+     * own temp file, so concurrent builds of the same chunk don't mix.
+     */
+    private void writeLineIndex(File indexFile, long[] offsets)
+            throws IOException {
+        File tmpFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmpFile)));
+        boolean written = false;
+        try{
+            out.writeInt(offsets.length);
+            long prevOffset = 0;
+            for(long offset : offsets){
+                long delta = offset - prevOffset;
+                while((delta & ~0x7FL) != 0){
+                    out.writeByte((int) ((delta & 0x7F) | 0x80));
+                    delta >>>= 7;
+                }
+                out.writeByte((int) delta);
+                prevOffset = offset;
+            }
+            written = true;
+        } finally {
+            out.close();
+            if(!written){
+                tmpFile.delete();
+            }
+        }
+        if(!tmpFile.renameTo(indexFile)){
+            tmpFile.delete();
+        }
+    }
+
+    private long[] readLineIndex(File indexFile)
+            throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)));
+        try{
+            long[] offsets = new long[in.readInt()];
+            long offset = 0;
+            for(int i = 0; i < offsets.length; i++){
+                long delta = 0;
+                int shift = 0;
+                int b;
+                do {
+                    b = in.readUnsignedByte();
+                    delta |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while((b & 0x80) != 0);
+                offset += delta;
+                offsets[i] = offset;
+            }
+            return offsets;
+        } finally {
+            in.close();
+        }
+    }
+
     public static void main(String[] args) {
         DFSSlave slave = new DFSSlave();
         JCommander commander = new JCommander(slave, args);
@@ -1,6 +1,8 @@
 import AbstractMapReduce;
+import DataType;
 import OutputCollector;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 /**
@@ -12,19 +14,33 @@ import java.util.Iterator;
  * "fromNodeNO. toNodeNO."
  * Output in the format:
  * "nodeNO.:xxx out-degree:xxx in-degree:xxx"
+ * The node numbers are long keys, so they are sorted
+ * numerically without padding.
+ * Binary edge lists, two big-endian longs per edge, are
+ * read with "-f FIXED_WIDTH -w 16".
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
  */
 
 public class GraphDegree extends AbstractMapReduce {
+
+    public GraphDegree(){
+        keyType = DataType.LONG;
+    }
+
     @Override
     public void map(String key, String value, OutputCollector collector) {
         String[] nodes = value.split("\\s+");
-        nodes[0] = String.format("%010d", Integer.parseInt(nodes[0]));
-        nodes[1] = String.format("%010d", Integer.parseInt(nodes[1]));
-        collector.collect(nodes[0], "o");
-        collector.collect(nodes[1], "i");
+        collector.collect(Long.parseLong(nodes[0]), "o");
+        collector.collect(Long.parseLong(nodes[1]), "i");
+    }
+
+    @Override
+    public void map(byte[] record, int offset, int length, OutputCollector collector) {
+        ByteBuffer edge = ByteBuffer.wrap(record, offset, length);
+        collector.collect(edge.getLong(), "o");
+        collector.collect(edge.getLong(), "i");
     }
 
     @Override
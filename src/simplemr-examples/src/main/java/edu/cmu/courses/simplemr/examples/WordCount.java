@@ -1,4 +1,5 @@
 import AbstractMapReduce;
+import DataType;
 import OutputCollector;
 
 import java.util.Iterator;
@@ -9,6 +10,8 @@ import java.util.Iterator;
  * In put a line of file.
  * Output in the format:
  * "word number"
+ * The combiner is enabled by default to sum the counts
+ * on mapper side, and the counts are kept as longs.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
@@ -16,22 +19,31 @@ import java.util.Iterator;
 
 public class WordCount extends AbstractMapReduce {
 
+    public WordCount(){
+        combine = true;
+        valueType = DataType.LONG;
+    }
+
     @Override
     public void map(String key, String value, OutputCollector collector) {
         String[] words = value.split("\\s+");
         for(String word : words){
-            collector.collect(word, "1");
+            collector.collect(word, 1);
         }
     }
 
     @Override
     public void reduce(String key, Iterator<String> values, OutputCollector collector) {
-        int count = 0;
+        long count = 0;
         while(values.hasNext()){
-            count++;
-            values.next();
+            count += nextLong(values);
         }
-        collector.collect(key, String.valueOf(count));
+        collector.collect(key, count);
+    }
+
+    @Override
+    public void combine(String key, Iterator<String> values, OutputCollector collector) {
+        reduce(key, values, collector);
     }
 
     public static void main(String[] args) {
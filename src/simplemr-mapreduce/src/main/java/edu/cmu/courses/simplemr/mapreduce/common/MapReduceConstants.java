@@ -7,4 +7,17 @@
 
 public class MapReduceConstants {
     public static final int DEFAULT_FILE_SERVER_PORT = 15410;
+    public static final long DEFAULT_LOCALITY_DELAY = 3000;
+    public static final int DEFAULT_MAPPER_SLOTS = 4;
+    public static final long DEFAULT_SPECULATIVE_LAG = 10000;
+    public static final double DEFAULT_SPECULATIVE_SLOWNESS = 0.5;
+    public static final double SPECULATIVE_CAP = 0.1;
+    public static final long ASSIGNMENT_GRACE = 5000;
+    public static final int DEFAULT_PARALLEL_FETCHES = 5;
+    public static final int DEFAULT_HOST_FETCHES = 4;
+    public static final int DEFAULT_FETCH_RETRIES = 3;
+    public static final long FETCH_RETRY_BACKOFF = 500;
+    public static final int FETCH_TIMEOUT = 60000;
+    public static final String PARTITION_INDEX_SUFFIX = ".index";
+    public static final String PARTITION_PARAMETER = "partition";
 }
@@ -3,7 +3,6 @@ import MapReduceConstants;
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
-import org.apache.commons.io.IOUtils;
 
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -11,12 +10,21 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 
 /**
  * The handler of files that transform from mappers to reducers.
+ * Files are sent by FileChannel.transferTo instead of being copied
+ * through a heap buffer, and a single byte range can be requested,
+ * so a reducer can fetch a part of file or resume a broken fetch.
+ * The partition parameter asks for one partition of a mapper data
+ * file, located by the index file next to it, and the byte range
+ * is counted from the start of the partition then.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
@@ -47,11 +55,117 @@ public class FileHandler extends HttpServlet {
             return;
         }
 
+        long base = 0;
+        long length = file.length();
+        String partition = request.getParameter(MapReduceConstants.PARTITION_PARAMETER);
+        if(partition != null){
+            long[] offsets = null;
+            try {
+                offsets = readPartitionOffsets(filePath, Integer.parseInt(partition));
+            } catch (NumberFormatException e){
+                offsets = null;
+            }
+            if(offsets == null){
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            base = offsets[0];
+            length = offsets[1] - offsets[0];
+            if(offsets[1] > file.length()){
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                return;
+            }
+        }
+        long[] range = parseRange(request.getHeader("Range"), length);
+        response.setHeader("Accept-Ranges", "bytes");
+        if(range == null){
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        if(range[0] > 0 || range[1] < length){
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", "bytes " + range[0] + "-" + (range[1] - 1) + "/" + length);
+        }
         response.setContentType(URLConnection.guessContentTypeFromName(filePath));
+        response.setHeader("Content-Length", Long.toString(range[1] - range[0]));
 
         FileInputStream in = new FileInputStream(file);
-        OutputStream out = response.getOutputStream();
-        IOUtils.copy(in, out);
+        try {
+            FileChannel channel = in.getChannel();
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = base + range[0];
+            while(position < base + range[1]){
+                long count = channel.transferTo(position, base + range[1] - position, out);
+                if(count <= 0){
+                    throw new IOException("file " + filePath + " ends before byte " + position);
+                }
+                position += count;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read the start and end offsets of the partition from the index
+     * file of the data file.
+     *
+     * @return null if there is no such partition
+     */
+    private long[] readPartitionOffsets(String filePath, int partition)
+            throws IOException {
+        File indexFile = new File(filePath + MapReduceConstants.PARTITION_INDEX_SUFFIX);
+        if(partition < 0 || !indexFile.exists() || (partition + 2) * 8L > indexFile.length()){
+            return null;
+        }
+        RandomAccessFile index = new RandomAccessFile(indexFile, "r");
+        try {
+            index.seek(partition * 8L);
+            return new long[]{index.readLong(), index.readLong()};
+        } finally {
+            index.close();
+        }
+    }
+
+    /**
+     * Parse the Range header of a single byte range, like "bytes=100-199",
+     * "bytes=100-" or the last bytes "bytes=-100". The other forms are
+     * ignored and the whole file is sent.
+     *
+     * @return the start and end (exclusive) of range, or null if the
+     *         range is out of file
+     */
+    private long[] parseRange(String header, long length){
+        long[] whole = new long[]{0, length};
+        if(header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0){
+            return whole;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if(dash < 0){
+            return whole;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start = 0;
+            long end = length;
+            if(first.length() == 0){
+                start = Math.max(0, length - Long.parseLong(last));
+            } else {
+                start = Long.parseLong(first);
+                if(last.length() > 0){
+                    end = Math.min(length, Long.parseLong(last) + 1);
+                }
+            }
+            if(start >= length || start >= end){
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e){
+            return whole;
+        }
     }
 
     @Override
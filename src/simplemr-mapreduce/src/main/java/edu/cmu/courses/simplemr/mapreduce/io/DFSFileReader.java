@@ -1,28 +1,77 @@
+import Constants;
 import DFSChunk;
 import DFSClient;
 import DFSFile;
 
 import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Read from distributed file system.
+ * Read from distributed file system. The bytes of a chunk are
+ * scanned for line breaks with a cursor, and every line is decoded
+ * once, only the lines across two reads are copied. With read-ahead,
+ * the next reads are issued on a background thread while the current
+ * one is being processed, so the remote I/O overlaps the map work.
+ *
+ * A block read by lines needn't start or end at a line break. It owns
+ * the lines starting within it: the line running into the block from
+ * the previous one is skipped, and the last line is read to its end
+ * even if it runs past the block.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
  */
 
 public class DFSFileReader extends FileReader {
+    private static final int OVERRUN_READ_SIZE = 8 * 1024;
 
     private DFSClient dfsClient;
     private DFSFile dfsFile;
     private long currentOffset;
-    private StringBuffer chunkBuffer;
+    private long bufferOffset;
+    private long nextBufferOffset;
+    private boolean lineStarted;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private byte[] lineBuffer;
+    private int lineLength;
+    private int readAheadDepth;
+    private int readSize;
+    private ExecutorService readAheadService;
+    private LinkedList<Future<byte[]>> pendingReads;
 
     public DFSFileReader(String registryHost, int registryPort, FileBlock fileBlock) {
+        this(registryHost, registryPort, fileBlock, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param readAheadDepth the number of reads issued ahead of the one
+     *                       being processed, 0 for reading synchronously
+     * @param readSize the max bytes of every read, a chunk larger than
+     *                 it is read in several pieces
+     */
+    public DFSFileReader(String registryHost, int registryPort, FileBlock fileBlock,
+                         int readAheadDepth, int readSize) {
         super(fileBlock);
+        this.readAheadDepth = readAheadDepth;
+        this.readSize = readSize;
+        this.pendingReads = new LinkedList<Future<byte[]>>();
         this.dfsClient = new DFSClient(registryHost, registryPort);
-        this.chunkBuffer = new StringBuffer();
         this.currentOffset = fileBlock.getOffset();
+        this.bufferOffset = currentOffset;
+        this.nextBufferOffset = currentOffset;
+        this.lineStarted = false;
+        this.buffer = new byte[0];
+        this.position = 0;
+        this.limit = 0;
+        this.lineBuffer = new byte[0];
+        this.lineLength = 0;
     }
 
     @Override
@@ -32,56 +81,206 @@ public class DFSFileReader extends FileReader {
         if(dfsFile == null){
             throw new IOException("can't get file metadata");
         }
+        if(readAheadDepth > 0){
+            readAheadService = Executors.newSingleThreadExecutor();
+        }
     }
 
     @Override
     public void close() {
-
+        if(readAheadService != null){
+            readAheadService.shutdownNow();
+            readAheadService = null;
+        }
+        pendingReads.clear();
     }
 
     @Override
     public String readLine() throws Exception {
-        StringBuffer lineBuffer = new StringBuffer();
-        while(true){
-            if(fileBlock.getSize() >= 0 && currentOffset == fileBlock.getOffset() + fileBlock.getSize()){
-                break;
+        if(!lineStarted){
+            lineStarted = true;
+            if(fileBlock.getOffset() > 0){
+                currentOffset = fileBlock.getOffset() - 1;
+                nextBufferOffset = currentOffset;
+                nextLine();
             }
-            if(chunkBuffer.length() == 0){
-                DFSChunk chunk = getNextChunk();
-                if(chunk == null){
-                    break;
+        }
+        if(fileBlock.getSize() >= 0 &&
+           bufferOffset + position >= fileBlock.getOffset() + fileBlock.getSize()){
+            return null;
+        }
+        return nextLine();
+    }
+
+    private String nextLine() throws Exception {
+        while(true){
+            for(int i = position; i < limit; i++){
+                if(buffer[i] == '\n'){
+                    String line = decodeLine(i);
+                    position = i + 1;
+                    return line;
                 }
-                long chunkOffset = currentOffset - chunk.getOffset();
-                int chunkSize = 0;
-                if(fileBlock.getSize() < 0){
-                    chunkSize = (int) (chunk.getSize() - chunkOffset);
-                } else {
-                    chunkSize = (int)(Math.min(fileBlock.getOffset() + fileBlock.getSize(),
-                                               chunk.getOffset() + chunk.getSize()) - currentOffset);
+            }
+            appendToLineBuffer();
+            if(!fillBuffer(true)){
+                if(lineLength == 0){
+                    return null;
                 }
-                byte[] data = dfsClient.readChunk(chunk, chunkOffset, chunkSize);
-                if(data == null || data.length == 0){
+                String line = new String(lineBuffer, 0, lineLength, Constants.CHARSET);
+                lineLength = 0;
+                return line;
+            }
+        }
+    }
+
+    /**
+     * Get the fraction of the file block consumed so far.
+     */
+    public float getProgress(){
+        long size = fileBlock.getSize();
+        if(size < 0 && dfsFile != null){
+            size = 0;
+            for(DFSChunk chunk : dfsFile.getChunks()){
+                size = Math.max(size, chunk.getOffset() + chunk.getSize() - fileBlock.getOffset());
+            }
+        }
+        if(size <= 0){
+            return 1.0f;
+        }
+        long consumed = bufferOffset + position - fileBlock.getOffset();
+        return Math.max(0.0f, Math.min(1.0f, (float) consumed / size));
+    }
+
+    /**
+     * Read raw bytes of the file block, for binary records.
+     *
+     * @return the count of bytes read, or -1 if reaching the end
+     */
+    public int read(byte[] data, int offset, int length)
+            throws Exception {
+        if(position == limit && !fillBuffer(false)){
+            return -1;
+        }
+        int count = Math.min(length, limit - position);
+        System.arraycopy(buffer, position, data, offset, count);
+        position += count;
+        return count;
+    }
+
+    private String decodeLine(int end){
+        if(lineLength == 0){
+            return new String(buffer, position, end - position, Constants.CHARSET);
+        }
+        int length = end - position;
+        ensureLineBuffer(lineLength + length);
+        System.arraycopy(buffer, position, lineBuffer, lineLength, length);
+        String line = new String(lineBuffer, 0, lineLength + length, Constants.CHARSET);
+        lineLength = 0;
+        return line;
+    }
+
+    private void appendToLineBuffer(){
+        int length = limit - position;
+        ensureLineBuffer(lineLength + length);
+        System.arraycopy(buffer, position, lineBuffer, lineLength, length);
+        lineLength += length;
+        position = limit;
+    }
+
+    private void ensureLineBuffer(int size){
+        if(size > lineBuffer.length){
+            byte[] newBuffer = new byte[Math.max(size, 2 * lineBuffer.length)];
+            System.arraycopy(lineBuffer, 0, newBuffer, 0, lineLength);
+            lineBuffer = newBuffer;
+        }
+    }
+
+    /**
+     * Take the next read, keep the read-ahead queue full first. Only the
+     * block is read ahead, the bytes past it are read on demand, small
+     * pieces at a time, to finish the last line. A read that fails or
+     * comes back short throws, so the input is never cut silently.
+     *
+     * @param overrun whether reading past the end of block is allowed
+     * @return false if there is nothing more to read
+     */
+    private boolean fillBuffer(boolean overrun)
+            throws Exception {
+        byte[] data = null;
+        if(readAheadService == null){
+            Callable<byte[]> read = nextRead(false);
+            if(read != null){
+                data = read.call();
+            }
+        } else {
+            while(pendingReads.size() <= readAheadDepth){
+                Callable<byte[]> read = nextRead(false);
+                if(read == null){
                     break;
                 }
-                chunkBuffer.append(new String(data));
+                pendingReads.add(readAheadService.submit(read));
             }
-            char ch = chunkBuffer.charAt(0);
-            chunkBuffer.deleteCharAt(0);
-            currentOffset++;
-            lineBuffer.append(ch);
-            if(ch == '\n'){
-                break;
+            if(pendingReads.size() > 0){
+                try {
+                    data = pendingReads.poll().get();
+                } catch (ExecutionException e){
+                    if(e.getCause() instanceof Exception){
+                        throw (Exception) e.getCause();
+                    }
+                    throw e;
+                }
+            }
+        }
+        if(data == null && overrun){
+            Callable<byte[]> read = nextRead(true);
+            if(read != null){
+                data = read.call();
             }
         }
+        if(data == null){
+            return false;
+        }
+        buffer = data;
+        position = 0;
+        limit = data.length;
+        bufferOffset = nextBufferOffset;
+        nextBufferOffset += data.length;
+        return true;
+    }
 
-        if(lineBuffer.length() == 0){
+    /**
+     * Plan the read of the next piece within the current chunk and the file block,
+     * or within the current chunk only past the end of block if overrun.
+     */
+    private Callable<byte[]> nextRead(boolean overrun){
+        long blockEnd = fileBlock.getOffset() + fileBlock.getSize();
+        boolean bounded = fileBlock.getSize() >= 0 && !overrun;
+        if(bounded && currentOffset >= blockEnd){
+            return null;
+        }
+        final DFSChunk chunk = getNextChunk();
+        if(chunk == null){
             return null;
-        } else {
-            if(lineBuffer.charAt(lineBuffer.length() - 1) == '\n'){
-                lineBuffer.deleteCharAt(lineBuffer.length() - 1);
-            }
-            return lineBuffer.toString();
         }
+        final long chunkOffset = currentOffset - chunk.getOffset();
+        long end = chunk.getOffset() + chunk.getSize();
+        if(bounded){
+            end = Math.min(end, blockEnd);
+        }
+        final int size = (int) Math.min(end - currentOffset, overrun ? OVERRUN_READ_SIZE : readSize);
+        currentOffset += size;
+        return new Callable<byte[]>() {
+            @Override
+            public byte[] call()
+                    throws IOException {
+                byte[] data = dfsClient.readChunk(chunk, chunkOffset, size);
+                if(data == null || data.length < size){
+                    throw new IOException("can't read " + size + " bytes at offset " + chunkOffset +
+                                          " of chunk " + chunk.getId());
+                }
+                return data;
+            }
+        };
     }
 
     private DFSChunk getNextChunk(){
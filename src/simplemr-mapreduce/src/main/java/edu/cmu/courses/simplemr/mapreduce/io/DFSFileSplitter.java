@@ -1,9 +1,12 @@
+import DFSChunk;
 import DFSClient;
+import DFSFile;
+import DFSNode;
+import InputFormat;
 
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
  * Split a file in distributed file system.
@@ -14,6 +17,8 @@ import java.util.List;
 
 public class DFSFileSplitter implements FileSplitter {
 
+    private static final double SPLIT_SLOP = 0.1;
+
     private DFSClient dfsClient;
 
     public DFSFileSplitter(String registryHost, int registryPort)
@@ -22,23 +27,137 @@ public class DFSFileSplitter implements FileSplitter {
         dfsClient.connect();
     }
 
+    /**
+     * Split the file into blocks of about the same bytes. A cut is moved
+     * to a chunk boundary nearby, since text chunks always end with a
+     * line break. Otherwise it may fall in the middle of a line, and the
+     * reader of the block finishes the line it starts.
+     */
     @Override
     public List<FileBlock> split(String file, int number) throws Exception {
         List<FileBlock> blocks = new ArrayList<FileBlock>();
-        long[] offsets = dfsClient.linesOffset(file);
-        if(offsets == null){
+        DFSFile dfsFile = dfsClient.getFile(file);
+        if(dfsFile == null){
+            return blocks;
+        }
+        long fileSize = getFileSize(dfsFile);
+        int rangeCount = (int) Math.min(number, fileSize);
+        if(rangeCount <= 0){
+            return blocks;
+        }
+        long rangeSize = fileSize / rangeCount;
+        long offset = 0;
+        for(int i = 1; i < rangeCount; i++){
+            long end = snapToChunk(dfsFile, i * rangeSize, (long) (rangeSize * SPLIT_SLOP));
+            if(end > offset){
+                blocks.add(new FileBlock(file, offset, end - offset));
+                offset = end;
+            }
+        }
+        blocks.add(new FileBlock(file, offset, -1));
+        return blocks;
+    }
+
+    /**
+     * Split the file by the input format. Files of fixed-width records
+     * are split at record boundaries by their byte size, and files of
+     * length-prefixed records are not split. Every block is located
+     * to the hosts holding its data.
+     */
+    public List<FileBlock> split(String file, int number, InputFormat format, int recordLength)
+            throws Exception {
+        List<FileBlock> blocks = null;
+        if(format == InputFormat.FIXED_WIDTH){
+            blocks = splitFixedWidth(file, number, recordLength);
+        } else if(!format.isSplittable()){
+            blocks = new ArrayList<FileBlock>();
+            blocks.add(new FileBlock(file, 0, -1));
+        } else {
+            blocks = split(file, number);
+        }
+        DFSFile dfsFile = dfsClient.getFile(file);
+        if(dfsFile == null){
+            return new ArrayList<FileBlock>();
+        }
+        for(FileBlock block : blocks){
+            block.setHosts(getHosts(dfsFile, block));
+        }
+        return blocks;
+    }
+
+    /**
+     * Get the hosts holding replicas of the chunks of block,
+     * the host holding the most bytes of the block first.
+     */
+    private String[] getHosts(DFSFile dfsFile, FileBlock block){
+        final Map<String, Long> localBytes = new HashMap<String, Long>();
+        long end = block.getSize() < 0 ? Long.MAX_VALUE : block.getOffset() + block.getSize();
+        for(DFSChunk chunk : dfsFile.getChunks()){
+            long overlap = Math.min(end, chunk.getOffset() + chunk.getSize()) -
+                           Math.max(block.getOffset(), chunk.getOffset());
+            if(overlap <= 0){
+                continue;
+            }
+            for(DFSNode node : chunk.getNodes()){
+                Long bytes = localBytes.get(node.getRegistryHost());
+                localBytes.put(node.getRegistryHost(), (bytes == null ? 0 : bytes) + overlap);
+            }
+        }
+        List<String> hosts = new ArrayList<String>(localBytes.keySet());
+        Collections.sort(hosts, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return localBytes.get(o2).compareTo(localBytes.get(o1));
+            }
+        });
+        return hosts.toArray(new String[hosts.size()]);
+    }
+
+    private List<FileBlock> splitFixedWidth(String file, int number, int recordLength)
+            throws Exception {
+        List<FileBlock> blocks = new ArrayList<FileBlock>();
+        DFSFile dfsFile = dfsClient.getFile(file);
+        if(dfsFile == null){
+            return blocks;
+        }
+        long recordCount = getFileSize(dfsFile) / recordLength;
+        if(recordCount == 0){
             return blocks;
         }
-        int rangeCount = Math.min(number, offsets.length);
-        int rangeSize = offsets.length / rangeCount;
+        int rangeCount = (int) Math.min(number, recordCount);
+        long rangeSize = recordCount / rangeCount;
         for(int i = 0; i < rangeCount; i++){
-            long offset = offsets[i * rangeSize];
-            int size = -1;
+            long offset = i * rangeSize * recordLength;
+            long size = -1;
             if(i < rangeCount - 1){
-                size = (int) (offsets[(i + 1) * rangeSize] - offset);
+                size = rangeSize * recordLength;
             }
             blocks.add(new FileBlock(file, offset, size));
         }
         return blocks;
     }
+
+    private long getFileSize(DFSFile dfsFile){
+        long fileSize = 0;
+        for(DFSChunk chunk : dfsFile.getChunks()){
+            fileSize = Math.max(fileSize, chunk.getOffset() + chunk.getSize());
+        }
+        return fileSize;
+    }
+
+    /**
+     * Move the offset to the nearest chunk boundary within slop bytes.
+     */
+    private long snapToChunk(DFSFile dfsFile, long offset, long slop){
+        long result = offset;
+        long distance = slop + 1;
+        for(DFSChunk chunk : dfsFile.getChunks()){
+            long d = Math.abs(chunk.getOffset() - offset);
+            if(chunk.getOffset() > 0 && d < distance){
+                result = chunk.getOffset();
+                distance = d;
+            }
+        }
+        return result;
+    }
 }
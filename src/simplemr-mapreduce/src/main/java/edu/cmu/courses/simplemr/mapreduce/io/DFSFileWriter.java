@@ -1,11 +1,15 @@
+import Constants;
 import DFSChunk;
 import DFSClient;
 import DFSFile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 
 /**
- * Write to distributed file system.
+ * Write to distributed file system. Lines are buffered until
+ * there are lineCount of them, and then written as a chunk at
+ * the end of file, so only one chunk is held in memory.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
@@ -17,8 +21,9 @@ public class DFSFileWriter extends FileWriter {
     private int replicas;
     private DFSClient dfsClient;
     private DFSFile dfsFile;
+    private long offset;
     private int currentLineCount;
-    private StringBuffer lineBuffer;
+    private ByteArrayOutputStream chunkBuffer;
 
     public DFSFileWriter(String registryHost, int registryPort,
                          String file, int lineCount, int replicas) {
@@ -27,8 +32,9 @@ public class DFSFileWriter extends FileWriter {
         this.replicas = replicas;
         this.dfsClient = new DFSClient(registryHost, registryPort);
         this.dfsFile = null;
+        this.offset = 0;
         this.currentLineCount = 0;
-        this.lineBuffer = new StringBuffer();
+        this.chunkBuffer = new ByteArrayOutputStream();
     }
 
     @Override
@@ -47,24 +53,33 @@ public class DFSFileWriter extends FileWriter {
 
     @Override
     public void writeLine(String line) throws Exception {
-        lineBuffer.append(line + "\n");
+        chunkBuffer.write(line.getBytes(Constants.CHARSET));
+        chunkBuffer.write('\n');
         currentLineCount++;
         if(currentLineCount % lineCount == 0){
             flushChunk();
         }
     }
 
+    /**
+     * Delete the file written so far, if the writing fails.
+     */
+    public void delete() throws Exception {
+        dfsClient.deleteFile(file);
+    }
+
     private void flushChunk() throws IOException {
-        int size = lineBuffer.length();
+        int size = chunkBuffer.size();
         if(size > 0){
-            DFSChunk chunk = dfsClient.createChunk(dfsFile.getId(), 0, size);
+            DFSChunk chunk = dfsClient.createChunk(dfsFile.getId(), offset, size);
             if(chunk == null){
                 throw new IOException("can't allocate new chunk");
             }
-            if(!dfsClient.writeChunk(chunk, 0, size, lineBuffer.toString().getBytes())){
+            if(!dfsClient.writeChunk(chunk, 0, size, chunkBuffer.toByteArray())){
                 throw new IOException("can't write chunk");
             }
-            lineBuffer.delete(0, size);
+            offset += size;
+            chunkBuffer.reset();
         }
     }
 }
@@ -0,0 +1,33 @@
+import Constants;
+import OutputCollector;
+
+/**
+ * The output collector of reducers. Every record is written to the
+ * output file in DFS as it's collected, instead of being kept until
+ * the reducer finishes, so the memory of reducer doesn't grow with
+ * its output. Records are written in the order they are collected.
+ * An exception of the writer is thrown as the cause of a
+ * RuntimeException, since collect can't throw it.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class DFSOutputCollector extends OutputCollector {
+    private DFSFileWriter writer;
+
+    public DFSOutputCollector(DFSFileWriter writer){
+        this.writer = writer;
+    }
+
+    @Override
+    public void collect(String key, String value){
+        try {
+            writer.writeLine(key + Constants.MAPREDUCE_DELIMITER + value);
+        } catch (RuntimeException e){
+            throw e;
+        } catch (Exception e){
+            throw new RuntimeException(e);
+        }
+    }
+}
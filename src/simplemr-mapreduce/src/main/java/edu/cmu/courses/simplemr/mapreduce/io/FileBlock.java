@@ -1,7 +1,8 @@
 import java.io.Serializable;
 
 /**
- * Define a block of file.
+ * Define a block of file, with the hosts holding replicas
+ * of its data, so the block could be mapped locally.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
@@ -11,11 +12,13 @@ public class FileBlock implements Serializable {
     private String file;
     private long offset;
     private long size;
+    private String[] hosts;
 
     public FileBlock(String file, long offset, long size){
         this.file = file;
         this.offset = offset;
         this.size = size;
+        this.hosts = new String[0];
     }
 
     public String getFile() {
@@ -29,4 +32,12 @@ public class FileBlock implements Serializable {
     public long getSize() {
         return size;
     }
+
+    public String[] getHosts() {
+        return hosts;
+    }
+
+    public void setHosts(String[] hosts) {
+        this.hosts = hosts;
+    }
 }
@@ -0,0 +1,35 @@
+import MapReduce;
+import OutputCollector;
+
+import java.io.IOException;
+
+/**
+ * Map the raw bytes of records which have the same length.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class FixedWidthRecordReader extends RecordReader {
+    private DFSFileReader reader;
+    private byte[] record;
+
+    public FixedWidthRecordReader(DFSFileReader reader, int recordLength){
+        this.reader = reader;
+        this.record = new byte[recordLength];
+    }
+
+    @Override
+    public boolean next(MapReduce mr, OutputCollector collector)
+            throws Exception {
+        int length = readFully(reader, record, record.length);
+        if(length == 0){
+            return false;
+        }
+        if(length < record.length){
+            throw new IOException("truncated record of " + length + " bytes, expect " + record.length);
+        }
+        mr.map(record, 0, record.length, collector);
+        return true;
+    }
+}
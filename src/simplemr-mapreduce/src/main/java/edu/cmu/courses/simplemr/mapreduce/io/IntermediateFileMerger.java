@@ -0,0 +1,228 @@
+import Constants;
+import LoserTree;
+import Utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Merge sorted intermediate files into one by comparing the raw
+ * bytes of keys. The readers are the sources of a loser tree, so
+ * every record takes log k comparisons and no object is allocated
+ * per record. At most fanIn files are opened at once. With more
+ * files, the smallest ones are merged into temporary files next to
+ * them first, as few as needed for the last pass to merge exactly
+ * fanIn files. The last pass is a stream of records, which can be
+ * written to a file or consumed directly, so the reducer doesn't
+ * spill the merged input before reducing it. The memory for read
+ * buffers is shared by the files of a pass, so a small pass reads
+ * in large blocks.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class IntermediateFileMerger {
+    public static final String PASS_FILE_SUFFIX = "_PASS_";
+
+    private static final int READ_BUFFER_MEMORY = 16 << 20;
+
+    private static final AtomicInteger passCount = new AtomicInteger(0);
+
+    private static final Comparator<IntermediateFileReader> COMPARATOR = new Comparator<IntermediateFileReader>() {
+        @Override
+        public int compare(IntermediateFileReader o1, IntermediateFileReader o2) {
+            return o1.compareKey(o2);
+        }
+    };
+
+    public static void merge(List<String> files, String outputFile)
+            throws IOException {
+        merge(files, outputFile, Deflater.NO_COMPRESSION);
+    }
+
+    public static void merge(List<String> files, String outputFile, int compressionLevel)
+            throws IOException {
+        merge(files, new IntermediateFileWriter(outputFile, compressionLevel));
+    }
+
+    public static void merge(List<String> files, IntermediateFileWriter writer)
+            throws IOException {
+        merge(files, writer, Constants.DEFAULT_MERGE_FACTOR);
+    }
+
+    /**
+     * Merge the files into the writer, which is closed after the last record.
+     */
+    public static void merge(List<String> files, IntermediateFileWriter writer, int fanIn)
+            throws IOException {
+        IntermediateRecordReader reader = open(files, fanIn);
+        try {
+            copy(reader, writer);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Open the files as one sorted stream of records. The passes needed
+     * to bring the files down to fanIn are merged to disk here, and the
+     * last pass is merged as the stream is read. Closing the stream
+     * deletes the files of the passes.
+     */
+    public static IntermediateRecordReader open(List<String> files, int fanIn)
+            throws IOException {
+        if(fanIn < 2){
+            throw new IllegalArgumentException("The fan-in of merge should be at least 2");
+        }
+        List<String> inputs = new ArrayList<String>(files);
+        List<String> passFiles = new ArrayList<String>();
+        try {
+            while(inputs.size() > fanIn){
+                sortBySize(inputs);
+                List<String> passInputs = new ArrayList<String>(inputs.subList(0, Utils.getMergePassSize(inputs.size(), fanIn)));
+                String passFile = passInputs.get(0) + PASS_FILE_SUFFIX + passCount.getAndIncrement();
+                passFiles.add(passFile);
+                IntermediateRecordReader reader = new MergedReader(passInputs, new ArrayList<String>());
+                try {
+                    copy(reader, new IntermediateFileWriter(passFile));
+                } finally {
+                    reader.close();
+                }
+                inputs.removeAll(passInputs);
+                inputs.add(passFile);
+                for(String file : passInputs){
+                    if(passFiles.remove(file)){
+                        new File(file).delete();
+                    }
+                }
+            }
+            return new MergedReader(inputs, passFiles);
+        } catch (IOException e){
+            deleteFiles(passFiles);
+            throw e;
+        } catch (RuntimeException e){
+            deleteFiles(passFiles);
+            throw e;
+        }
+    }
+
+    private static void copy(IntermediateRecordReader reader, IntermediateFileWriter writer)
+            throws IOException {
+        while(reader.next()){
+            writer.append(reader.getBuffer(), 0, reader.getKeyLength(),
+                          reader.getValueOffset(), reader.getValueLength());
+        }
+        writer.close();
+    }
+
+    private static void deleteFiles(List<String> files){
+        for(String file : files){
+            new File(file).delete();
+        }
+    }
+
+    private static void sortBySize(List<String> files){
+        Collections.sort(files, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return Long.valueOf(new File(o1).length()).compareTo(new File(o2).length());
+            }
+        });
+    }
+
+    /**
+     * The records of one merge pass in order. The current record is
+     * the one of the reader on top of the loser tree, so nothing is
+     * copied between the files and the consumer.
+     */
+    private static class MergedReader extends IntermediateRecordReader {
+        private List<IntermediateFileReader> opened;
+        private List<String> ownedFiles;
+        private LoserTree<IntermediateFileReader> tree;
+        private IntermediateFileReader current;
+
+        public MergedReader(List<String> files, List<String> ownedFiles)
+                throws IOException {
+            int bufferSize = Math.max(IntermediateFileWriter.BUFFER_SIZE, READ_BUFFER_MEMORY / Math.max(1, files.size()));
+            List<IntermediateFileReader> readers = new ArrayList<IntermediateFileReader>();
+            this.opened = new ArrayList<IntermediateFileReader>();
+            this.ownedFiles = ownedFiles;
+            try {
+                for(String file : files){
+                    IntermediateFileReader reader = new IntermediateFileReader(file, bufferSize);
+                    opened.add(reader);
+                    if(reader.next()){
+                        readers.add(reader);
+                    }
+                }
+            } catch (IOException e){
+                closeReaders();
+                throw e;
+            }
+            this.tree = new LoserTree<IntermediateFileReader>(readers, COMPARATOR);
+            this.current = null;
+        }
+
+        @Override
+        public boolean next()
+                throws IOException {
+            if(current != null){
+                tree.update(current.next());
+            }
+            current = tree.isEmpty() ? null : tree.top();
+            return current != null;
+        }
+
+        @Override
+        public byte[] getBuffer(){
+            return current.getBuffer();
+        }
+
+        @Override
+        public int getKeyLength(){
+            return current.getKeyLength();
+        }
+
+        @Override
+        public int getValueOffset(){
+            return current.getValueOffset();
+        }
+
+        @Override
+        public int getValueLength(){
+            return current.getValueLength();
+        }
+
+        @Override
+        public void close()
+                throws IOException {
+            try {
+                closeReaders();
+            } finally {
+                deleteFiles(ownedFiles);
+            }
+        }
+
+        private void closeReaders()
+                throws IOException {
+            IOException error = null;
+            for(IntermediateFileReader reader : opened){
+                try {
+                    reader.close();
+                } catch (IOException e){
+                    error = e;
+                }
+            }
+            if(error != null){
+                throw error;
+            }
+        }
+    }
+}
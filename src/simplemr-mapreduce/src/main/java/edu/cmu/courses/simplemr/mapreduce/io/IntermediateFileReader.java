@@ -0,0 +1,118 @@
+import Utils;
+
+import java.io.*;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Read the records written by IntermediateFileWriter. The key and
+ * value of the current record are kept in one reused byte array,
+ * the key from offset 0 and the value right after the key, so
+ * scanning and comparing records needs neither parsing nor decoding.
+ * Compressed files are inflated on the fly.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class IntermediateFileReader extends IntermediateRecordReader {
+    private static final int INITIAL_RECORD_SIZE = 256;
+
+    private String file;
+    private DataInputStream in;
+    private Inflater inflater;
+    private byte[] buffer;
+    private int keyLength;
+    private int valueLength;
+
+    public IntermediateFileReader(String file)
+            throws IOException {
+        this(file, IntermediateFileWriter.BUFFER_SIZE);
+    }
+
+    public IntermediateFileReader(String file, int bufferSize)
+            throws IOException {
+        this.file = file;
+        InputStream input = new FileInputStream(file);
+        int format = input.read();
+        if(format == IntermediateFileWriter.FORMAT_DEFLATE){
+            inflater = new Inflater();
+            input = new InflaterInputStream(input, inflater, IntermediateFileWriter.BUFFER_SIZE);
+        } else if(format != IntermediateFileWriter.FORMAT_RAW){
+            input.close();
+            throw new IOException("unknown format of intermediate file " + file);
+        }
+        this.in = new DataInputStream(new BufferedInputStream(input, bufferSize));
+        this.buffer = new byte[INITIAL_RECORD_SIZE];
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return false if reaching the end of file
+     */
+    @Override
+    public boolean next()
+            throws IOException {
+        int length = readVInt();
+        if(length == 0){
+            return false;
+        }
+        keyLength = length - 1;
+        valueLength = readVInt();
+        if(keyLength + valueLength > buffer.length){
+            buffer = new byte[Math.max(keyLength + valueLength, 2 * buffer.length)];
+        }
+        in.readFully(buffer, 0, keyLength + valueLength);
+        return true;
+    }
+
+    @Override
+    public byte[] getBuffer(){
+        return buffer;
+    }
+
+    @Override
+    public int getKeyLength(){
+        return keyLength;
+    }
+
+    @Override
+    public int getValueOffset(){
+        return keyLength;
+    }
+
+    @Override
+    public int getValueLength(){
+        return valueLength;
+    }
+
+    public int compareKey(IntermediateFileReader other){
+        return Utils.compareBytes(buffer, 0, keyLength, other.buffer, 0, other.keyLength);
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        in.close();
+        if(inflater != null){
+            inflater.end();
+        }
+    }
+
+    private int readVInt()
+            throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7){
+            int b = in.read();
+            if(b < 0){
+                throw new EOFException("unexpected end of intermediate file " + file);
+            }
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IOException("malformed intermediate file " + file);
+    }
+}
@@ -0,0 +1,77 @@
+import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Write the map output records in the binary intermediate format.
+ * Every record is the length of key plus one and the length of value,
+ * both as variable-length ints, followed by the bytes of key and value.
+ * A zero length marks the end of file, so a truncated file could be
+ * told from a complete one. The first byte of file tells whether the
+ * records after it are compressed by deflate, which shrinks the map
+ * output to transfer in the shuffle several times for text.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class IntermediateFileWriter {
+    public static final int BUFFER_SIZE = 1 << 16;
+    public static final int FORMAT_RAW = 0;
+    public static final int FORMAT_DEFLATE = 1;
+
+    private OutputStream out;
+    private Deflater deflater;
+
+    public IntermediateFileWriter(String file)
+            throws IOException {
+        this(new FileOutputStream(file), Deflater.NO_COMPRESSION);
+    }
+
+    public IntermediateFileWriter(String file, int compressionLevel)
+            throws IOException {
+        this(new FileOutputStream(file), compressionLevel);
+    }
+
+    /**
+     * @param compressionLevel the deflate level from 1 (fastest) to 9 (smallest),
+     *                         0 for writing the records without compression
+     */
+    public IntermediateFileWriter(OutputStream out, int compressionLevel)
+            throws IOException {
+        if(compressionLevel == Deflater.NO_COMPRESSION){
+            out.write(FORMAT_RAW);
+        } else {
+            out.write(FORMAT_DEFLATE);
+            deflater = new Deflater(compressionLevel);
+            out = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+        }
+        this.out = new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    public void append(byte[] buffer, int keyOffset, int keyLength, int valueOffset, int valueLength)
+            throws IOException {
+        writeVInt(keyLength + 1);
+        writeVInt(valueLength);
+        out.write(buffer, keyOffset, keyLength);
+        out.write(buffer, valueOffset, valueLength);
+    }
+
+    public void close()
+            throws IOException {
+        writeVInt(0);
+        out.close();
+        if(deflater != null){
+            deflater.end();
+        }
+    }
+
+    private void writeVInt(int value)
+            throws IOException {
+        while((value & ~0x7F) != 0){
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
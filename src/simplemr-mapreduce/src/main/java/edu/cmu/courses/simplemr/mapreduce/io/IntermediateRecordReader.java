@@ -0,0 +1,36 @@
+import Utils;
+
+import java.io.IOException;
+
+/**
+ * A sorted stream of intermediate records, read one at a time. The key
+ * and value of the current record live in the byte array of getBuffer,
+ * which is only valid until the next call of next.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public abstract class IntermediateRecordReader {
+
+    /**
+     * Move to the next record.
+     *
+     * @return false if there is no more record
+     */
+    public abstract boolean next() throws IOException;
+
+    public abstract byte[] getBuffer();
+
+    public abstract int getKeyLength();
+
+    public abstract int getValueOffset();
+
+    public abstract int getValueLength();
+
+    public abstract void close() throws IOException;
+
+    public boolean keyEquals(byte[] key, int offset, int length){
+        return Utils.compareBytes(getBuffer(), 0, getKeyLength(), key, offset, length) == 0;
+    }
+}
@@ -0,0 +1,115 @@
+import DataType;
+import ValueIterator;
+
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterate the key groups of a sorted intermediate stream, and the values
+ * of the current key straight from the reader. Nothing is buffered but
+ * the current key, so the memory doesn't grow with the size of a key
+ * group. The values not read by reduce or combine are skipped when
+ * moving to the next key. An IOException of the reader is thrown as
+ * the cause of a RuntimeException, since Iterator can't throw it.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class IntermediateValueIterator extends ValueIterator {
+    private IntermediateRecordReader reader;
+    private DataType valueType;
+    private byte[] key;
+    private int keyLength;
+    private boolean hasRecord;
+    private boolean inGroup;
+
+    public IntermediateValueIterator(IntermediateRecordReader reader, DataType valueType)
+            throws IOException {
+        this.reader = reader;
+        this.valueType = valueType;
+        this.key = new byte[0];
+        this.keyLength = 0;
+        this.hasRecord = reader.next();
+        this.inGroup = false;
+    }
+
+    /**
+     * Move to the next key.
+     *
+     * @return false if there is no more key
+     */
+    public boolean nextKey()
+            throws IOException {
+        while(inGroup){
+            advance();
+        }
+        if(!hasRecord){
+            return false;
+        }
+        keyLength = reader.getKeyLength();
+        if(keyLength > key.length){
+            key = new byte[Math.max(keyLength, 2 * key.length)];
+        }
+        System.arraycopy(reader.getBuffer(), 0, key, 0, keyLength);
+        inGroup = true;
+        return true;
+    }
+
+    public byte[] getKey(){
+        return key;
+    }
+
+    public int getKeyLength(){
+        return keyLength;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return inGroup;
+    }
+
+    @Override
+    public String next() {
+        checkNext();
+        String value = valueType.decode(reader.getBuffer(), reader.getValueOffset(), reader.getValueLength());
+        moveNext();
+        return value;
+    }
+
+    @Override
+    public long nextLong() {
+        checkNext();
+        long value = valueType.decodeAsLong(reader.getBuffer(), reader.getValueOffset(), reader.getValueLength());
+        moveNext();
+        return value;
+    }
+
+    @Override
+    public double nextDouble() {
+        checkNext();
+        double value = valueType.decodeAsDouble(reader.getBuffer(), reader.getValueOffset(), reader.getValueLength());
+        moveNext();
+        return value;
+    }
+
+    private void checkNext(){
+        if(!inGroup){
+            throw new NoSuchElementException();
+        }
+    }
+
+    private void moveNext(){
+        try {
+            advance();
+        } catch (IOException e){
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void advance()
+            throws IOException {
+        hasRecord = reader.next();
+        inGroup = hasRecord && reader.keyEquals(key, 0, keyLength);
+    }
+}
@@ -0,0 +1,35 @@
+import Constants;
+import MapReduce;
+import OutputCollector;
+
+/**
+ * Map every line split at the first tab, the key is the part
+ * before the tab and the value is the rest of line.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class KeyValueRecordReader extends RecordReader {
+    private FileReader reader;
+
+    public KeyValueRecordReader(FileReader reader){
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean next(MapReduce mr, OutputCollector collector)
+            throws Exception {
+        String line = reader.readLine();
+        if(line == null){
+            return false;
+        }
+        int index = line.indexOf(Constants.MAPREDUCE_DELIMITER);
+        if(index < 0){
+            mr.map(line, "", collector);
+        } else {
+            mr.map(line.substring(0, index), line.substring(index + 1), collector);
+        }
+        return true;
+    }
+}
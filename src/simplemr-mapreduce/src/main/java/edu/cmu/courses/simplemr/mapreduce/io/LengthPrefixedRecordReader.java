@@ -0,0 +1,51 @@
+import MapReduce;
+import OutputCollector;
+
+import java.io.IOException;
+
+/**
+ * Map the raw bytes of records which start with their
+ * length as a 4-byte big-endian int.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class LengthPrefixedRecordReader extends RecordReader {
+    private static final int INITIAL_RECORD_SIZE = 256;
+
+    private DFSFileReader reader;
+    private byte[] header;
+    private byte[] record;
+
+    public LengthPrefixedRecordReader(DFSFileReader reader){
+        this.reader = reader;
+        this.header = new byte[4];
+        this.record = new byte[INITIAL_RECORD_SIZE];
+    }
+
+    @Override
+    public boolean next(MapReduce mr, OutputCollector collector)
+            throws Exception {
+        int count = readFully(reader, header, header.length);
+        if(count == 0){
+            return false;
+        }
+        if(count < header.length){
+            throw new IOException("truncated record length");
+        }
+        int length = ((header[0] & 0xFF) << 24) | ((header[1] & 0xFF) << 16) |
+                     ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+        if(length < 0){
+            throw new IOException("illegal record length " + length);
+        }
+        if(length > record.length){
+            record = new byte[Math.max(length, 2 * record.length)];
+        }
+        if(readFully(reader, record, length) < length){
+            throw new IOException("truncated record of " + length + " bytes");
+        }
+        mr.map(record, 0, length, collector);
+        return true;
+    }
+}
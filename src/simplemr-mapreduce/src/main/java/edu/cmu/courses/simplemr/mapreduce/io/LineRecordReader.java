@@ -0,0 +1,31 @@
+import Utils;
+import MapReduce;
+import OutputCollector;
+import Pair;
+
+/**
+ * Map every line with its first token as the key.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class LineRecordReader extends RecordReader {
+    private FileReader reader;
+
+    public LineRecordReader(FileReader reader){
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean next(MapReduce mr, OutputCollector collector)
+            throws Exception {
+        String line = reader.readLine();
+        if(line == null){
+            return false;
+        }
+        Pair<String, String> entry = Utils.splitLine(line);
+        mr.map(entry.getKey(), line, collector);
+        return true;
+    }
+}
@@ -0,0 +1,671 @@
+import Constants;
+import Utils;
+import DataType;
+import HashPartitioner;
+import MapReduce;
+import MapReduceConstants;
+import OutputCollector;
+import Partitioner;
+import ValueIterator;
+import MapperTask;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The output buffer of a mapper task. Every collected record is
+ * serialized into a large byte array, numbers in the binary form of
+ * their types, and assigned to a reducer partition by the partitioner,
+ * with a compact int index of its partition and offsets. When the
+ * memory budget is used up, the index is sorted by partition and key,
+ * so only the ints are moved and not the records, and the partitions
+ * are spilled to the task folder as sorted runs. When the mapper
+ * finishes, the runs of every partition are merged into its partition
+ * file, so the memory of mapper stays flat whatever the split size is.
+ * The runs and partition files are written in the binary intermediate
+ * format with the keys and values still serialized. With indexed output
+ * the partitions are written one after another into a single data file
+ * instead, and an index file keeps the offset where each of them starts.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class MapOutputBuffer extends OutputCollector {
+    public static final String SPILL_FILE_PREFIX = "SPILL_";
+
+    private static final int PARTITION = 0;
+    private static final int KEY_START = 1;
+    private static final int KEY_LENGTH = 2;
+    private static final int VALUE_LENGTH = 3;
+    private static final int INDEX_SIZE = 4;
+    private static final int INDEX_BYTES = INDEX_SIZE * 4;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+    private static final int MAX_BUFFER_SIZE = Constants.MAX_MAPPER_BUFFER_BYTES;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private MapReduce mr;
+    private Partitioner partitioner;
+    private String folderName;
+    private int reducerAmount;
+    private boolean combinerEnabled;
+    private DataType keyType;
+    private DataType valueType;
+    private int compressionLevel;
+    private long memoryLimit;
+    private int spillCount;
+    private byte[] kvbuffer;
+    private int bufferEnd;
+    private int[] kvindex;
+    private int recordCount;
+    private List<List<String>> spillFiles;
+    private boolean indexedOutput;
+    private FileOutputStream dataFile;
+    private long[] partitionOffsets;
+
+    public MapOutputBuffer(MapperTask task, MapReduce mr, Partitioner partitioner){
+        this.mr = mr;
+        this.partitioner = partitioner;
+        this.folderName = task.getOutputDir() + Constants.FILE_SEPARATOR + task.getTaskFolderName();
+        this.reducerAmount = task.getReducerAmount();
+        this.combinerEnabled = task.isCombinerEnabled();
+        this.keyType = task.getKeyType();
+        this.valueType = task.getValueType();
+        this.compressionLevel = task.getCompressionLevel();
+        this.memoryLimit = ((long) task.getBufferSize()) << 20;
+        this.spillCount = 0;
+        this.kvbuffer = new byte[(int) Math.min(INITIAL_BUFFER_SIZE, memoryLimit)];
+        this.bufferEnd = 0;
+        this.kvindex = new int[INDEX_SIZE * (INITIAL_BUFFER_SIZE / INDEX_BYTES)];
+        this.recordCount = 0;
+        this.spillFiles = new ArrayList<List<String>>();
+        for(int i = 0; i < reducerAmount; i++){
+            spillFiles.add(new ArrayList<String>());
+        }
+        this.indexedOutput = task.isIndexedOutput();
+        this.partitionOffsets = new long[reducerAmount + 1];
+    }
+
+    @Override
+    public void collect(String key, String value){
+        value = String.valueOf(value);
+        reserve(3L * (key.length() + value.length()));
+        int keyEnd = keyType.encode(key, kvbuffer, bufferEnd);
+        append(keyEnd, valueType.encode(value, kvbuffer, keyEnd));
+    }
+
+    @Override
+    public void collect(long key, String value){
+        value = String.valueOf(value);
+        reserve(3L * value.length());
+        int keyEnd = keyType.encode(key, kvbuffer, bufferEnd);
+        append(keyEnd, valueType.encode(value, kvbuffer, keyEnd));
+    }
+
+    @Override
+    public void collect(double key, String value){
+        value = String.valueOf(value);
+        reserve(3L * value.length());
+        int keyEnd = keyType.encode(key, kvbuffer, bufferEnd);
+        append(keyEnd, valueType.encode(value, kvbuffer, keyEnd));
+    }
+
+    @Override
+    public void collect(String key, long value){
+        reserve(3L * key.length());
+        int keyEnd = keyType.encode(key, kvbuffer, bufferEnd);
+        append(keyEnd, valueType.encode(value, kvbuffer, keyEnd));
+    }
+
+    @Override
+    public void collect(String key, double value){
+        reserve(3L * key.length());
+        int keyEnd = keyType.encode(key, kvbuffer, bufferEnd);
+        append(keyEnd, valueType.encode(value, kvbuffer, keyEnd));
+    }
+
+    @Override
+    public void collect(long key, long value){
+        reserve(0);
+        int keyEnd = keyType.encode(key, kvbuffer, bufferEnd);
+        append(keyEnd, valueType.encode(value, kvbuffer, keyEnd));
+    }
+
+    @Override
+    public void collect(long key, double value){
+        reserve(0);
+        int keyEnd = keyType.encode(key, kvbuffer, bufferEnd);
+        append(keyEnd, valueType.encode(value, kvbuffer, keyEnd));
+    }
+
+    @Override
+    public void collect(double key, long value){
+        reserve(0);
+        int keyEnd = keyType.encode(key, kvbuffer, bufferEnd);
+        append(keyEnd, valueType.encode(value, kvbuffer, keyEnd));
+    }
+
+    @Override
+    public void collect(double key, double value){
+        reserve(0);
+        int keyEnd = keyType.encode(key, kvbuffer, bufferEnd);
+        append(keyEnd, valueType.encode(value, kvbuffer, keyEnd));
+    }
+
+    public int getSpillCount(){
+        return spillCount;
+    }
+
+    public void close()
+            throws IOException {
+        if(indexedOutput){
+            dataFile = new FileOutputStream(getFilePath(MapperTask.OUTPUT_FILE));
+        }
+        try {
+            if(spillCount == 0){
+                writePartitions();
+            } else {
+                spill();
+                mergePartitions();
+            }
+            if(indexedOutput){
+                writeIndex();
+            }
+        } finally {
+            if(dataFile != null){
+                dataFile.close();
+                dataFile = null;
+            }
+        }
+    }
+
+    /**
+     * Delete the spill files and the output written so far, when the
+     * mapper fails, so nothing is left behind in the task folder.
+     */
+    public void abort(){
+        if(dataFile != null){
+            try {
+                dataFile.close();
+            } catch (IOException e){
+                // deleted below anyway
+            }
+            dataFile = null;
+        }
+        for(List<String> files : spillFiles){
+            for(String file : files){
+                new File(file).delete();
+            }
+            files.clear();
+        }
+        for(int i = 0; i < reducerAmount; i++){
+            new File(getFilePath(MapperTask.PARTITION_FILE_PREFIX + i)).delete();
+        }
+        new File(getFilePath(MapperTask.OUTPUT_FILE)).delete();
+        new File(getFilePath(MapperTask.OUTPUT_FILE + MapReduceConstants.PARTITION_INDEX_SUFFIX)).delete();
+        reset();
+    }
+
+    private void writePartitions()
+            throws IOException {
+        sort(0, recordCount);
+        int start = 0;
+        for(int i = 0; i < reducerAmount; i++){
+            int end = partitionEnd(start, i);
+            writeRecords(start, end, newPartitionWriter(i));
+            partitionWritten(i);
+            start = end;
+        }
+        reset();
+    }
+
+    private void mergePartitions()
+            throws IOException {
+        for(int i = 0; i < reducerAmount; i++){
+            List<String> files = spillFiles.get(i);
+            if(files.size() == 0){
+                newPartitionWriter(i).close();
+            } else if(files.size() == 1 && !indexedOutput){
+                moveFile(files.get(0), new File(getFilePath(MapperTask.PARTITION_FILE_PREFIX + i)));
+            } else if(files.size() == 1){
+                appendFile(files.get(0));
+            } else if(combinerEnabled){
+                combineSorted(IntermediateFileMerger.open(files, Constants.DEFAULT_MERGE_FACTOR), newPartitionWriter(i));
+            } else {
+                IntermediateFileMerger.merge(files, newPartitionWriter(i));
+            }
+            for(String file : files){
+                new File(file).delete();
+            }
+            files.clear();
+            partitionWritten(i);
+        }
+    }
+
+    /**
+     * Open the writer of the partition file, or of the next segment
+     * of the data file with indexed output.
+     */
+    private IntermediateFileWriter newPartitionWriter(int partition)
+            throws IOException {
+        if(!indexedOutput){
+            return new IntermediateFileWriter(getFilePath(MapperTask.PARTITION_FILE_PREFIX + partition),
+                                              compressionLevel);
+        }
+        return new IntermediateFileWriter(new SegmentOutputStream(dataFile), compressionLevel);
+    }
+
+    private void partitionWritten(int partition)
+            throws IOException {
+        if(indexedOutput){
+            partitionOffsets[partition + 1] = dataFile.getChannel().position();
+        }
+    }
+
+    /**
+     * Copy a spill file, which is already written in the format
+     * of a partition, to the end of the data file.
+     */
+    private void appendFile(String file)
+            throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            long size = in.getChannel().size();
+            long position = 0;
+            while(position < size){
+                position += in.getChannel().transferTo(position, size - position, dataFile.getChannel());
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Write the offsets of partitions in the data file as longs, with
+     * the end of the last partition at the end, so partition i is the
+     * bytes from the long i to the long i + 1.
+     */
+    private void writeIndex()
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                getFilePath(MapperTask.OUTPUT_FILE + MapReduceConstants.PARTITION_INDEX_SUFFIX))));
+        for(long offset : partitionOffsets){
+            out.writeLong(offset);
+        }
+        out.close();
+    }
+
+    private void spill()
+            throws IOException {
+        sort(0, recordCount);
+        int start = 0;
+        for(int i = 0; i < reducerAmount; i++){
+            int end = partitionEnd(start, i);
+            if(end > start){
+                File spillFile = new File(getFilePath(SPILL_FILE_PREFIX + spillCount + "_" +
+                                                      MapperTask.PARTITION_FILE_PREFIX + i));
+                writeRecords(start, end, new IntermediateFileWriter(spillFile.getAbsolutePath(), compressionLevel));
+                spillFiles.get(i).add(spillFile.getAbsolutePath());
+            }
+            start = end;
+        }
+        spillCount++;
+        reset();
+    }
+
+    private void reset(){
+        bufferEnd = 0;
+        recordCount = 0;
+    }
+
+    /**
+     * Make room for a record with the given bytes of text,
+     * plus the room for its numbers in any form.
+     */
+    private void reserve(long textBytes){
+        long extra = textBytes + 2 * DataType.MAX_NUMBER_BYTES;
+        if(bufferEnd + extra > kvbuffer.length){
+            long size = Math.max(2L * kvbuffer.length, bufferEnd + extra);
+            size = Math.min(size, Math.max(memoryLimit, bufferEnd + extra));
+            if(size > MAX_BUFFER_SIZE){
+                throw new IllegalStateException("map output buffer can't grow to " + size + " bytes");
+            }
+            kvbuffer = Arrays.copyOf(kvbuffer, (int) size);
+        }
+        if((recordCount + 1) * INDEX_SIZE > kvindex.length){
+            kvindex = Arrays.copyOf(kvindex, 2 * kvindex.length);
+        }
+    }
+
+    /**
+     * Index the record just serialized at the end of the buffer.
+     */
+    private void append(int keyEnd, int valueEnd){
+        int keyStart = bufferEnd;
+        int partition = getPartition(keyStart, keyEnd - keyStart);
+        int index = recordCount * INDEX_SIZE;
+        kvindex[index + PARTITION] = partition;
+        kvindex[index + KEY_START] = keyStart;
+        kvindex[index + KEY_LENGTH] = keyEnd - keyStart;
+        kvindex[index + VALUE_LENGTH] = valueEnd - keyEnd;
+        bufferEnd = valueEnd;
+        recordCount++;
+        if(bufferEnd + (long) recordCount * INDEX_BYTES >= memoryLimit){
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new RuntimeException("can't spill map output to " + folderName, e);
+            }
+        }
+    }
+
+    private int getPartition(int keyStart, int keyLength){
+        int partition;
+        if(partitioner.getClass() == HashPartitioner.class){
+            partition = ((HashPartitioner) partitioner).getPartition(kvbuffer, keyStart, keyLength, reducerAmount);
+        } else {
+            partition = partitioner.getPartition(keyType.decode(kvbuffer, keyStart, keyLength), reducerAmount);
+        }
+        if(partition < 0 || partition >= reducerAmount){
+            throw new IllegalArgumentException("Illegal partition " + partition + " for key " +
+                                               keyType.decode(kvbuffer, keyStart, keyLength));
+        }
+        return partition;
+    }
+
+    private int partitionEnd(int start, int partition){
+        int end = start;
+        while(end < recordCount && kvindex[end * INDEX_SIZE + PARTITION] == partition){
+            end++;
+        }
+        return end;
+    }
+
+    private int compare(int i, int j){
+        int a = i * INDEX_SIZE;
+        int b = j * INDEX_SIZE;
+        if(kvindex[a + PARTITION] != kvindex[b + PARTITION]){
+            return kvindex[a + PARTITION] < kvindex[b + PARTITION] ? -1 : 1;
+        }
+        return Utils.compareBytes(kvbuffer, kvindex[a + KEY_START], kvindex[a + KEY_LENGTH],
+                                  kvbuffer, kvindex[b + KEY_START], kvindex[b + KEY_LENGTH]);
+    }
+
+    private void swap(int i, int j){
+        int a = i * INDEX_SIZE;
+        int b = j * INDEX_SIZE;
+        for(int k = 0; k < INDEX_SIZE; k++){
+            int tmp = kvindex[a + k];
+            kvindex[a + k] = kvindex[b + k];
+            kvindex[b + k] = tmp;
+        }
+    }
+
+    /**
+     * Three-way quick sort of the index entries in [lo, hi), so the
+     * runs of equal keys, which are common in map output, are not
+     * sorted again. Recurse on the smaller side to bound the stack.
+     */
+    private void sort(int lo, int hi){
+        while(hi - lo > INSERTION_SORT_THRESHOLD){
+            int mid = lo + ((hi - lo) >>> 1);
+            if(compare(mid, lo) < 0){
+                swap(mid, lo);
+            }
+            if(compare(hi - 1, lo) < 0){
+                swap(hi - 1, lo);
+            }
+            if(compare(hi - 1, mid) < 0){
+                swap(hi - 1, mid);
+            }
+            swap(lo, mid);
+            int lt = lo;
+            int gt = hi - 1;
+            int i = lo + 1;
+            while(i <= gt){
+                int cmp = compare(i, lt);
+                if(cmp < 0){
+                    swap(lt++, i++);
+                } else if(cmp > 0){
+                    swap(i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if(lt - lo < hi - gt){
+                sort(lo, lt);
+                lo = gt + 1;
+            } else {
+                sort(gt + 1, hi);
+                hi = lt;
+            }
+        }
+        for(int i = lo + 1; i < hi; i++){
+            for(int j = i; j > lo && compare(j - 1, j) > 0; j--){
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    private void writeRecords(int start, int end, IntermediateFileWriter writer)
+            throws IOException {
+        if(!combinerEnabled){
+            for(int i = start; i < end; i++){
+                int index = i * INDEX_SIZE;
+                int keyStart = kvindex[index + KEY_START];
+                int keyLength = kvindex[index + KEY_LENGTH];
+                writer.append(kvbuffer, keyStart, keyLength, keyStart + keyLength, kvindex[index + VALUE_LENGTH]);
+            }
+            writer.close();
+            return;
+        }
+        CombineCollector collector = new CombineCollector(writer);
+        int groupStart = start;
+        for(int i = start + 1; i <= end; i++){
+            if(i == end || compare(groupStart, i) != 0){
+                int index = groupStart * INDEX_SIZE;
+                String key = keyType.decode(kvbuffer, kvindex[index + KEY_START], kvindex[index + KEY_LENGTH]);
+                combine(key, new BufferValueIterator(groupStart, i), collector);
+                groupStart = i;
+            }
+        }
+        writer.close();
+    }
+
+    private void combineSorted(IntermediateRecordReader reader, IntermediateFileWriter writer)
+            throws IOException {
+        try {
+            CombineCollector collector = new CombineCollector(writer);
+            IntermediateValueIterator values = new IntermediateValueIterator(reader, valueType);
+            while(values.nextKey()){
+                combine(keyType.decode(values.getKey(), 0, values.getKeyLength()), values, collector);
+            }
+        } finally {
+            reader.close();
+        }
+        writer.close();
+    }
+
+    private void combine(String key, Iterator<String> values, CombineCollector collector)
+            throws IOException {
+        try {
+            mr.combine(key, values, collector);
+        } catch (RuntimeException e){
+            if(e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private String getFilePath(String fileName){
+        return folderName + Constants.FILE_SEPARATOR + fileName;
+    }
+
+    private static void moveFile(String source, File target)
+            throws IOException {
+        if(!new File(source).renameTo(target)){
+            throw new IOException("can't move " + source + " to " + target.getAbsolutePath());
+        }
+    }
+
+    /**
+     * The stream of a segment in the data file. Closing it finishes
+     * the segment without closing the data file.
+     */
+    private static class SegmentOutputStream extends FilterOutputStream {
+        public SegmentOutputStream(OutputStream out){
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+                throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close()
+                throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Serialize the records emitted by the combiner in the types
+     * of the job and write them to the intermediate file.
+     */
+    private class CombineCollector extends OutputCollector {
+        private IntermediateFileWriter writer;
+        private byte[] record;
+
+        public CombineCollector(IntermediateFileWriter writer){
+            this.writer = writer;
+            this.record = new byte[2 * DataType.MAX_NUMBER_BYTES];
+        }
+
+        @Override
+        public void collect(String key, String value){
+            value = String.valueOf(value);
+            reserve(3 * (key.length() + value.length()));
+            int keyEnd = keyType.encode(key, record, 0);
+            write(keyEnd, valueType.encode(value, record, keyEnd));
+        }
+
+        @Override
+        public void collect(long key, String value){
+            value = String.valueOf(value);
+            reserve(3 * value.length());
+            int keyEnd = keyType.encode(key, record, 0);
+            write(keyEnd, valueType.encode(value, record, keyEnd));
+        }
+
+        @Override
+        public void collect(double key, String value){
+            value = String.valueOf(value);
+            reserve(3 * value.length());
+            int keyEnd = keyType.encode(key, record, 0);
+            write(keyEnd, valueType.encode(value, record, keyEnd));
+        }
+
+        @Override
+        public void collect(String key, long value){
+            reserve(3 * key.length());
+            int keyEnd = keyType.encode(key, record, 0);
+            write(keyEnd, valueType.encode(value, record, keyEnd));
+        }
+
+        @Override
+        public void collect(String key, double value){
+            reserve(3 * key.length());
+            int keyEnd = keyType.encode(key, record, 0);
+            write(keyEnd, valueType.encode(value, record, keyEnd));
+        }
+
+        @Override
+        public void collect(long key, long value){
+            int keyEnd = keyType.encode(key, record, 0);
+            write(keyEnd, valueType.encode(value, record, keyEnd));
+        }
+
+        @Override
+        public void collect(long key, double value){
+            int keyEnd = keyType.encode(key, record, 0);
+            write(keyEnd, valueType.encode(value, record, keyEnd));
+        }
+
+        @Override
+        public void collect(double key, long value){
+            int keyEnd = keyType.encode(key, record, 0);
+            write(keyEnd, valueType.encode(value, record, keyEnd));
+        }
+
+        @Override
+        public void collect(double key, double value){
+            int keyEnd = keyType.encode(key, record, 0);
+            write(keyEnd, valueType.encode(value, record, keyEnd));
+        }
+
+        private void reserve(int textBytes){
+            if(textBytes + 2 * DataType.MAX_NUMBER_BYTES > record.length){
+                record = new byte[textBytes + 2 * DataType.MAX_NUMBER_BYTES];
+            }
+        }
+
+        private void write(int keyEnd, int valueEnd){
+            try {
+                writer.append(record, 0, keyEnd, keyEnd, valueEnd - keyEnd);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Decode the values of a key group from the buffer one at a time,
+     * numeric values are read without going through text.
+     */
+    private class BufferValueIterator extends ValueIterator {
+        private int current;
+        private int end;
+
+        public BufferValueIterator(int start, int end){
+            this.current = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current < end;
+        }
+
+        @Override
+        public String next() {
+            int index = nextIndex();
+            return valueType.decode(kvbuffer, valueStart(index), kvindex[index + VALUE_LENGTH]);
+        }
+
+        @Override
+        public long nextLong() {
+            int index = nextIndex();
+            return valueType.decodeAsLong(kvbuffer, valueStart(index), kvindex[index + VALUE_LENGTH]);
+        }
+
+        @Override
+        public double nextDouble() {
+            int index = nextIndex();
+            return valueType.decodeAsDouble(kvbuffer, valueStart(index), kvindex[index + VALUE_LENGTH]);
+        }
+
+        private int nextIndex(){
+            if(current >= end){
+                throw new NoSuchElementException();
+            }
+            return (current++) * INDEX_SIZE;
+        }
+
+        private int valueStart(int index){
+            return kvindex[index + KEY_START] + kvindex[index + KEY_LENGTH];
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import InputFormat;
+import MapReduce;
+import OutputCollector;
+
+/**
+ * Read the records of a file block in the input format of job and
+ * pass them to the map function one at a time.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public abstract class RecordReader {
+
+    /**
+     * Read the next record and map it.
+     *
+     * @return false if there is no more record
+     */
+    public abstract boolean next(MapReduce mr, OutputCollector collector) throws Exception;
+
+    public static RecordReader newInstance(InputFormat format, int recordLength, DFSFileReader reader){
+        switch (format){
+            case KEY_VALUE:
+                return new KeyValueRecordReader(reader);
+            case FIXED_WIDTH:
+                return new FixedWidthRecordReader(reader, recordLength);
+            case LENGTH_PREFIXED:
+                return new LengthPrefixedRecordReader(reader);
+            default:
+                return new LineRecordReader(reader);
+        }
+    }
+
+    /**
+     * Read exactly length bytes unless reaching the end of file.
+     *
+     * @return the count of bytes read
+     */
+    protected static int readFully(DFSFileReader reader, byte[] buffer, int length)
+            throws Exception {
+        int count = 0;
+        while(count < length){
+            int n = reader.read(buffer, count, length - count);
+            if(n < 0){
+                break;
+            }
+            count += n;
+        }
+        return count;
+    }
+}
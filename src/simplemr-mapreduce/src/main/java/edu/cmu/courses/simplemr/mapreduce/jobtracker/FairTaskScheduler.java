@@ -0,0 +1,28 @@
+import java.util.*;
+
+/**
+ * Give the free slot to the job running the fewest mapper tasks,
+ * the earlier job first if there is a tie. A small job submitted
+ * after a large one gets its slots as soon as the running tasks
+ * of the large one finish, instead of waiting for all of them.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class FairTaskScheduler implements TaskScheduler {
+    @Override
+    public void sort(List<JobInfo> jobs) {
+        final Map<Integer, Integer> runningTasks = new HashMap<Integer, Integer>();
+        for(JobInfo job : jobs){
+            runningTasks.put(job.getId(), job.getRunningMapperTaskNumber());
+        }
+        Collections.sort(jobs, new Comparator<JobInfo>() {
+            @Override
+            public int compare(JobInfo o1, JobInfo o2) {
+                int diff = runningTasks.get(o1.getId()) - runningTasks.get(o2.getId());
+                return diff != 0 ? diff : o1.compareTo(o2);
+            }
+        });
+    }
+}
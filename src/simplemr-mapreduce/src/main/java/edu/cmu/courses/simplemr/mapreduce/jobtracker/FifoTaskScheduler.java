@@ -0,0 +1,17 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Schedule the jobs in the order they are submitted. A job gets
+ * no slot until all the mapper tasks of earlier jobs are assigned.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class FifoTaskScheduler implements TaskScheduler {
+    @Override
+    public void sort(List<JobInfo> jobs) {
+        Collections.sort(jobs);
+    }
+}
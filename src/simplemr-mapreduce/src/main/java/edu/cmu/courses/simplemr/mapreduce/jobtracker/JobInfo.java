@@ -38,6 +38,20 @@ public class JobInfo implements Comparable<JobInfo>{
         return new ArrayList<MapperTask>(mapperTasks.values());
     }
 
+    /**
+     * Get the number of mapper tasks assigned to task trackers
+     * and not finished yet.
+     */
+    public int getRunningMapperTaskNumber(){
+        int number = 0;
+        for(MapperTask task : getMapperTasks()){
+            if(task.getStatus() == TaskStatus.PENDING && task.getTaskTrackerName() != null){
+                number++;
+            }
+        }
+        return number;
+    }
+
     public List<ReducerTask> getReducerTasks(){
         return new ArrayList<ReducerTask>(reducerTasks.values());
     }
@@ -135,7 +149,10 @@ public class JobInfo implements Comparable<JobInfo>{
                 " succeeded, " + failureCount + " failed";
     }
 
-    private JobStatus checkJobStatus(){
+    /**
+     * Update the status of a pending job by the status of its tasks.
+     */
+    public JobStatus checkJobStatus(){
         boolean failure = false;
         boolean pending = false;
         if(status != JobStatus.PENDING){
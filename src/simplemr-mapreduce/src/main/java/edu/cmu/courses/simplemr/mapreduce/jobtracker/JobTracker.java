@@ -26,9 +26,14 @@ import java.util.concurrent.*;
 
 /**
  * The Job Tracker class for assigning and coordinating map and reduce
- * task trackers. Task trackers will inform the job tracker no matter
+ * task trackers. Task trackers ask for mapper tasks in their heartbeats,
+ * as many as their free slots, and the task scheduler decides which job
+ * gets every slot. Task trackers will inform the job tracker no matter
  * its succeed or failed. Then the job tracker take following steps
- * to get the whole jobs done.
+ * to get the whole jobs done. Tasks running much slower than their
+ * peers get a backup attempt on another task tracker, and whichever
+ * attempt finishes first is taken. The backup attempts of mapper
+ * tasks also go out with the heartbeat replies.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
@@ -58,39 +63,66 @@ public class JobTracker {
     @Parameter(names = {"-t", "--temp-dir"}, description = "the directory of temporary files")
     private String tempDir = "/tmp/simplemr-mapreduce-jobtracker";
 
+    @Parameter(names = {"-ld", "--locality-delay"}, description = "how long a mapper task waits for a task " +
+            "tracker holding its input data, before it's assigned to any task tracker (ms)")
+    private long localityDelay = MapReduceConstants.DEFAULT_LOCALITY_DELAY;
+
+    @Parameter(names = {"-sl", "--speculative-lag"}, description = "how long a task runs before " +
+            "it could get a backup attempt (ms)")
+    private long speculativeLag = MapReduceConstants.DEFAULT_SPECULATIVE_LAG;
+
+    @Parameter(names = {"-ss", "--speculative-slowness"}, description = "a task gets a backup attempt " +
+            "if its progress rate is below this fraction of the average rate of its peers")
+    private double speculativeSlowness = MapReduceConstants.DEFAULT_SPECULATIVE_SLOWNESS;
+
+    @Parameter(names = {"-sc", "--scheduler"}, description = "the policy of sharing mapper slots among jobs, " +
+            "FIFO, FAIR or POOL")
+    private SchedulingPolicy schedulingPolicy = SchedulingPolicy.FAIR;
+
+    @Parameter(names = {"-pw", "--pool-weights"}, description = "the weights of pools for the POOL scheduler, " +
+            "like batch=1,interactive=4")
+    private String poolWeights = "";
+
     @Parameter(names = {"-h", "--help"}, help = true)
     private boolean help;
 
     private ConcurrentHashMap<String, TaskTrackerInfo> taskTackers;
     private ConcurrentHashMap<Integer, JobInfo> jobs;
-    private PriorityBlockingQueue<MapperTask> mapperTasksQueue;
+    private Map<Integer, LinkedList<MapperTask>> waitingMapperTasks;
+    private Map<String, List<MapperTask>> backupMapperTasks;
+    private TaskScheduler scheduler;
     private ScheduledExecutorService periodicalChecker;
     private ExecutorService threadPool;
     private JobTrackerService service;
-    private Thread scheduler;
     private Registry registry;
 
     public JobTracker() {
         taskTackers = new ConcurrentHashMap<String, TaskTrackerInfo>();
         jobs = new ConcurrentHashMap<Integer, JobInfo>();
-        mapperTasksQueue = new PriorityBlockingQueue<MapperTask>();
+        waitingMapperTasks = new HashMap<Integer, LinkedList<MapperTask>>();
+        backupMapperTasks = new HashMap<String, List<MapperTask>>();
         periodicalChecker = Executors.newScheduledThreadPool(Constants.DEFAULT_SCHEDULED_THREAD_POOL_SIZE);
         threadPool = Executors.newFixedThreadPool(threadPoolSize);
     }
 
     public void start()
             throws Exception {
+        scheduler = createTaskScheduler();
         bindService();
         new FileServer(fileServerPort, tempDir).start();
         periodicalChecker.scheduleAtFixedRate(new JobTrackerChecker(this), 0, checkPeriod, TimeUnit.MILLISECONDS);
-        startScheduler();
     }
 
-    public void submitJob(JobConfig jobConfig) {
+    public int submitJob(JobConfig jobConfig) {
         jobConfig.validate();
         JobInfo job = new JobInfo(jobConfig);
         jobs.put(job.getId(), job);
         threadPool.execute(new JobTrackerWorker(this, job.getId()));
+        return job.getId();
+    }
+
+    public JobInfo getJob(int jobId){
+        return jobs.get(jobId);
     }
 
     public void startJob(int jobId)
@@ -110,99 +142,171 @@ public class JobTracker {
         }
     }
 
-    public void dispatchMapperTask(MapperTask task){
-        if(task.getStatus() == TaskStatus.PENDING){
-            try {
-                TaskTrackerInfo taskTracker = taskTackers.get(task.getTaskTrackerName());
-                Registry registry = LocateRegistry.getRegistry(taskTracker.getHost(), taskTracker.getRegistryPort());
-                TaskTrackerService taskTrackerService = (TaskTrackerService)registry.lookup(task.getTaskTrackerName());
-                taskTrackerService.runMapperTask(task);
-            } catch (Exception e) {
-                taskTrackerFailed(task.getTaskTrackerName());
-            }
-        }
-    }
-
-    public MapperTask takeMapperTask()
-            throws InterruptedException {
-        return mapperTasksQueue.take();
+    /**
+     * Update the status of task tracker, and assign mapper tasks
+     * to it as many as its free mapper slots, after the backup
+     * attempts waiting for it. The tasks assigned before but lost
+     * on the way are taken back first.
+     *
+     * @return the mapper tasks for the task tracker to run
+     */
+    public List<MapperTask> heartbeat(TaskTrackerInfo taskTracker){
+        TaskTrackerInfo myTaskTracker = updateTaskTracker(taskTracker);
+        requeueLostMapperTasks(myTaskTracker);
+        return assignMapperTasks(myTaskTracker);
     }
 
-    public void updateTaskTracker(TaskTrackerInfo taskTracker){
+    public TaskTrackerInfo updateTaskTracker(TaskTrackerInfo taskTracker){
         TaskTrackerInfo old = taskTackers.putIfAbsent(taskTracker.toString(), taskTracker);
         if(old != null){
             old.setTimestamp(System.currentTimeMillis());
+            old.setMapperSlots(taskTracker.getMapperSlots());
             old.setMapperTaskNumber(taskTracker.getMapperTaskNumber());
             old.setReduceTaskNumber(taskTracker.getReducerTaskNumber());
+            old.setTaskProgress(taskTracker.getTaskProgress());
+            return old;
         } else {
             taskTracker.setTimestamp(System.currentTimeMillis());
+            return taskTracker;
         }
     }
 
     public void mapperTaskSucceed(MapperTask task){
         JobInfo job = jobs.get(task.getJobId());
-        if(!taskExpire(job, task)){
-            LOG.debug("mapper task " + task.getTaskId() + " job " + task.getJobId() + " succeed");
-            Task myTask = job.getTask(task.getTaskId());
+        synchronized (job){
+            if(taskExpire(job, task)){
+                return;
+            }
+            MapperTask myTask = (MapperTask) job.getTask(task.getTaskId());
             myTask.setStatus(TaskStatus.SUCCEED);
-            sendReducerTask(job, task);
+            myTask.setFinishTime(System.currentTimeMillis());
+            myTask.setFileServerHost(task.getFileServerHost());
+            myTask.setFileServerPort(task.getFileServerPort());
+            acceptAttempt(myTask, task.getTaskTrackerName());
         }
+        LOG.debug("mapper task " + task.getTaskId() + " job " + task.getJobId() + " succeed");
+        sendReducerTask(job, task);
     }
 
     public void mapperTaskFailed(MapperTask task){
         JobInfo job = jobs.get(task.getJobId());
         if(!taskExpire(job, task)){
             Task myTask = job.getTask(task.getTaskId());
+            if(discardAttempt(myTask, task.getTaskTrackerName())){
+                LOG.debug("mapper task " + task.getTaskId() + " job " + task.getJobId() + " failed on " +
+                          task.getTaskTrackerName() + ", the other attempt goes on");
+                return;
+            }
             if(myTask.getAttemptCount() >= job.getConfig().getMaxAttemptCount()){
                 LOG.debug("mapper task " + task.getTaskId() + " job " + task.getJobId() + " failed");
                 myTask.setStatus(TaskStatus.FAILED);
             } else {
-                if(!migrateTaskTracker(task)){
-                    LOG.debug("mapper task " + task.getTaskId() + " job " + task.getJobId() + " failed");
-                    myTask.setStatus(TaskStatus.FAILED);
-                } else {
-                    LOG.debug("mapper task " + task.getTaskId() + " job " + task.getJobId() + " retrying");
-                    myTask.increaseAttemptCount();
-                    myTask.setStatus(TaskStatus.PENDING);
-                    mapperTasksQueue.offer((MapperTask) myTask);
-                }
+                LOG.debug("mapper task " + task.getTaskId() + " job " + task.getJobId() + " retrying");
+                myTask.increaseAttemptCount();
+                myTask.setStatus(TaskStatus.PENDING);
+                requeueMapperTask((MapperTask) myTask);
             }
         }
     }
 
     public void reducerTaskSucceed(ReducerTask task){
         JobInfo job = jobs.get(task.getJobId());
-        if(!taskExpire(job, task)){
-            LOG.debug("reducer task " + task.getTaskId() + " job " + task.getJobId() + " succeed");
+        synchronized (job){
+            if(taskExpire(job, task)){
+                return;
+            }
             Task myTask = job.getTask(task.getTaskId());
             myTask.setStatus(TaskStatus.SUCCEED);
+            myTask.setFinishTime(System.currentTimeMillis());
+            acceptAttempt(myTask, task.getTaskTrackerName());
         }
+        LOG.debug("reducer task " + task.getTaskId() + " job " + task.getJobId() + " succeed");
     }
 
     public void reducerTaskFailed(ReducerTask task){
         JobInfo job = jobs.get(task.getJobId());
         if(!taskExpire(job, task)){
-            Task myTask = job.getTask(task.getTaskId());
+            ReducerTask myTask = (ReducerTask) job.getTask(task.getTaskId());
+            synchronized (job){
+                if(task.getTaskTrackerName().equals(myTask.getCommitterName())){
+                    myTask.setCommitterName(null);
+                }
+                if(discardAttempt(myTask, task.getTaskTrackerName())){
+                    LOG.debug("reducer task " + task.getTaskId() + " job " + task.getJobId() + " failed on " +
+                              task.getTaskTrackerName() + ", the other attempt goes on");
+                    return;
+                }
+            }
             if(myTask.getAttemptCount() >= job.getConfig().getMaxAttemptCount()){
                 LOG.debug("reducer task " + task.getTaskId() + " job " + task.getJobId() + " failed");
                 myTask.setStatus(TaskStatus.FAILED);
             } else {
-                if(!migrateTaskTracker(task)){
+                if(!migrateTaskTracker(myTask)){
                     LOG.debug("reducer task " + task.getTaskId() + " job " + task.getJobId() + " failed");
                     myTask.setStatus(TaskStatus.FAILED);
                 } else {
                     LOG.debug("reducer task " + task.getTaskId() + " job " + task.getJobId() + " retrying");
                     myTask.increaseAttemptCount();
                     myTask.setStatus(TaskStatus.PENDING);
-                    List<MapperTask> mapperTasks = job.getMapperTasks();
-                    for(MapperTask mapperTask : mapperTasks){
-                        sendReducerTask(task.getTaskTrackerName(), mapperTask, Arrays.asList(new ReducerTask[]{task}));
+                    myTask.setStartTime(System.currentTimeMillis());
+                    for(MapperTask mapperTask : getFinishedMapper(myTask)){
+                        sendReducerTask(myTask.getTaskTrackerName(), mapperTask,
+                                        Arrays.asList(new ReducerTask[]{myTask}));
                     }
                 }
             }
         }
     }
 
+    /**
+     * Only one attempt of a reducer task writes the output to DFS, the
+     * first one asking. The others are told to discard their output.
+     * The commit is asked before the output is written, so it's given
+     * back when the committing attempt fails or its task tracker dies,
+     * and the task is re-run if no other attempt is left.
+     */
+    public boolean canCommit(ReducerTask task){
+        JobInfo job = jobs.get(task.getJobId());
+        if(job == null){
+            return false;
+        }
+        synchronized (job){
+            if(taskExpire(job, task)){
+                return false;
+            }
+            ReducerTask myTask = (ReducerTask) job.getTask(task.getTaskId());
+            if(myTask.getCommitterName() == null){
+                myTask.setCommitterName(task.getTaskTrackerName());
+            }
+            return myTask.getCommitterName().equals(task.getTaskTrackerName());
+        }
+    }
+
+    /**
+     * Drop the attempt which lost the commit to the other attempt, so
+     * the task is only run by the committing one. If that one is gone
+     * too, the task is retried as failed.
+     */
+    public void reducerTaskDiscarded(ReducerTask task){
+        JobInfo job = jobs.get(task.getJobId());
+        if(job == null){
+            return;
+        }
+        synchronized (job){
+            if(taskExpire(job, task)){
+                return;
+            }
+            ReducerTask myTask = (ReducerTask) job.getTask(task.getTaskId());
+            if(discardAttempt(myTask, task.getTaskTrackerName())){
+                LOG.debug("reducer task " + task.getTaskId() + " job " + task.getJobId() + " discarded on " +
+                          task.getTaskTrackerName() + ", the committing attempt goes on");
+                return;
+            }
+            myTask.setCommitterName(null);
+        }
+        reducerTaskFailed(task);
+    }
+
     public void reducerTaskFailedOnMapper(ReducerTask reducerTask, MapperTask mapperTask){
         JobInfo job = jobs.get(reducerTask.getJobId());
         if(!taskExpire(job, reducerTask)){
@@ -226,6 +330,25 @@ public class JobTracker {
         }
     }
 
+    /**
+     * Find the tasks progressing much slower than the other tasks of the
+     * same job, and launch a backup attempt for them. The reducer tasks
+     * are only checked after all the mapper tasks succeed, since they
+     * are waiting for the mappers before that.
+     */
+    public void checkStragglers(){
+        for(JobInfo job : jobs.values()){
+            if(job.getStatus() != JobStatus.PENDING || !job.getConfig().isSpeculative()){
+                continue;
+            }
+            List<MapperTask> mapperTasks = job.getMapperTasks();
+            speculate(job, new ArrayList<Task>(mapperTasks));
+            if(getFinishedMapper(job).size() == mapperTasks.size()){
+                speculate(job, new ArrayList<Task>(job.getReducerTasks()));
+            }
+        }
+    }
+
     public boolean needHelp(){
         return help;
     }
@@ -248,6 +371,17 @@ public class JobTracker {
         return sb.toString();
     }
 
+    private TaskScheduler createTaskScheduler(){
+        switch (schedulingPolicy){
+            case FIFO:
+                return new FifoTaskScheduler();
+            case POOL:
+                return new WeightedPoolTaskScheduler(poolWeights);
+            default:
+                return new FairTaskScheduler();
+        }
+    }
+
     private void bindService()
             throws RemoteException, UnknownHostException {
         service = new JobTrackerServiceImpl(this);
@@ -256,25 +390,14 @@ public class JobTracker {
         registry.rebind(JobClientService.class.getCanonicalName(), new JobClientServiceImpl(this));
     }
 
-    private void startScheduler(){
-        scheduler = new Thread(new JobTrackerScheduler(this, threadPoolSize));
-        scheduler.start();
-        try {
-            scheduler.join();
-        } catch (InterruptedException e) {
-            LOG.error("join of scheduler is interrupted", e);
-        } finally {
-            LOG.error("scheduler is exited!");
-            System.exit(-1);
-        }
-    }
-
     private List<FileBlock> splitInputFile(JobInfo job)
             throws Exception {
         DFSFileSplitter splitter = null;
         try {
             splitter = new DFSFileSplitter(dfsMasterRegistryHost, dfsMasterRegistryPort);
-            List<FileBlock> fileBlocks = splitter.split(job.getConfig().getInputFile(), job.getConfig().getMapperAmount());
+            List<FileBlock> fileBlocks = splitter.split(job.getConfig().getInputFile(), job.getConfig().getMapperAmount(),
+                                                        job.getConfig().getInputFormat(),
+                                                        job.getConfig().getRecordLength());
             if(fileBlocks.size() == 0){
                 throw new IllegalArgumentException("Invalid input file");
             }
@@ -289,16 +412,25 @@ public class JobTracker {
             throws Exception {
         List<FileBlock> fileBlocks = splitInputFile(job);
         job.getConfig().setMapperAmount(fileBlocks.size());
+        if(getMapperTaskTracker(null, null) == null){
+            job.setJobStatus(JobStatus.FAILED);
+            throw new RemoteException("No available task tracker now");
+        }
         for(FileBlock fileBlock : fileBlocks){
             MapperTask task = new MapperTask(job.getId(), fileBlock, job.getConfig().getReducerAmount());
-            TaskTrackerInfo taskTracker = getMapperTaskTracker();
-            if(taskTracker == null){
-                job.setJobStatus(JobStatus.FAILED);
-                throw new RemoteException("No available task tracker now");
-            }
-            task.setTaskTrackerName(taskTracker);
             task.setStatus(TaskStatus.PENDING);
             task.setMRClassName(job.getConfig().getClassName());
+            task.setCombinerEnabled(job.getConfig().isCombinerEnabled());
+            task.setBufferSize(job.getConfig().getMapperBufferSize());
+            task.setPartitionerClassName(job.getConfig().getPartitionerClassName());
+            task.setKeyType(job.getConfig().getKeyType());
+            task.setValueType(job.getConfig().getValueType());
+            task.setCompressionLevel(job.getConfig().getCompressionLevel());
+            task.setReadAheadDepth(job.getConfig().getReadAheadDepth());
+            task.setReadBufferSize(job.getConfig().getReadBufferSize());
+            task.setInputFormat(job.getConfig().getInputFormat());
+            task.setRecordLength(job.getConfig().getRecordLength());
+            task.setIndexedOutput(job.getConfig().isIndexedOutput());
             job.addMapperTask(task);
         }
     }
@@ -321,6 +453,9 @@ public class JobTracker {
             task.setReplicas(job.getConfig().getOutputFileReplica());
             task.setPartitionIndex(i);
             task.setMRClassName(job.getConfig().getClassName());
+            task.setKeyType(job.getConfig().getKeyType());
+            task.setValueType(job.getConfig().getValueType());
+            task.setMergeFactor(job.getConfig().getMergeFactor());
             job.addReducerTask(task);
         }
     }
@@ -329,32 +464,236 @@ public class JobTracker {
         List<MapperTask> mapperTasks = job.getMapperTasks();
         job.setJobStatus(JobStatus.PENDING);
         for(MapperTask mapperTask : mapperTasks){
-            mapperTasksQueue.offer(mapperTask);
+            requeueMapperTask(mapperTask);
         }
     }
 
-    private TaskTrackerInfo getMapperTaskTracker(){
+    /**
+     * Put the mapper task back to wait for a task tracker asking for work.
+     */
+    private void requeueMapperTask(MapperTask task){
+        TaskTrackerInfo oldTaskTracker = task.getTaskTrackerName() == null ?
+                                         null : taskTackers.get(task.getTaskTrackerName());
+        if(oldTaskTracker != null){
+            oldTaskTracker.removeTask(task);
+        }
+        task.setTaskTrackerName((String) null);
+        task.setStartTime(0);
+        task.setQueuedTime(System.currentTimeMillis());
+        synchronized (waitingMapperTasks){
+            LinkedList<MapperTask> tasks = waitingMapperTasks.get(task.getJobId());
+            if(tasks == null){
+                tasks = new LinkedList<MapperTask>();
+                waitingMapperTasks.put(task.getJobId(), tasks);
+            }
+            tasks.add(task);
+        }
+    }
+
+    /**
+     * Take back the mapper tasks assigned to the task tracker which it
+     * still doesn't report as running after ASSIGNMENT_GRACE. The reply
+     * of heartbeat carrying them was lost, or the report of their end,
+     * and the task tracker will never run or report them again.
+     */
+    private void requeueLostMapperTasks(TaskTrackerInfo taskTracker){
+        long now = System.currentTimeMillis();
+        Map<Integer, Float> runningTasks = taskTracker.getTaskProgress();
+        for(MapperTask task : taskTracker.getPendingMapperTask()){
+            JobInfo job = jobs.get(task.getJobId());
+            if(job == null){
+                continue;
+            }
+            synchronized (job){
+                if(task.getStatus() != TaskStatus.PENDING ||
+                   !taskTracker.toString().equals(task.getTaskTrackerName()) ||
+                   runningTasks.containsKey(task.getTaskId()) ||
+                   now - task.getStartTime() < MapReduceConstants.ASSIGNMENT_GRACE){
+                    continue;
+                }
+                LOG.warn("mapper task " + task.getTaskId() + " job " + task.getJobId() + " is lost on " +
+                         taskTracker + ", take it back");
+                if(!promoteBackupAttempt(task)){
+                    requeueMapperTask(task);
+                }
+            }
+        }
+    }
+
+    /**
+     * Assign the waiting mapper tasks to the task tracker, as many as its
+     * free slots. The task scheduler sorts the running jobs again for
+     * every slot, and the slot goes to the first job having a waiting
+     * task for the task tracker.
+     */
+    private List<MapperTask> assignMapperTasks(TaskTrackerInfo taskTracker){
+        List<MapperTask> assigned = takeBackupAttempts(taskTracker);
+        int freeSlots = taskTracker.getMapperSlots() - taskTracker.getMapperTaskNumber();
+        if(freeSlots <= 0){
+            return assigned;
+        }
+        int limit = assigned.size() + freeSlots;
+        long now = System.currentTimeMillis();
+        synchronized (waitingMapperTasks){
+            List<JobInfo> runningJobs = getRunningJobs();
+            while(assigned.size() < limit && waitingMapperTasks.size() > 0){
+                scheduler.sort(runningJobs);
+                MapperTask task = null;
+                for(JobInfo job : runningJobs){
+                    task = takeMapperTask(job, taskTracker, now);
+                    if(task != null){
+                        break;
+                    }
+                }
+                if(task == null){
+                    break;
+                }
+                task.setTaskTrackerName(taskTracker);
+                task.setStartTime(now);
+                taskTracker.increaseMapperTaskNumber();
+                assigned.add(task);
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * Take the backup attempts of mapper tasks queued for the task
+     * tracker, which go out with the reply of its heartbeat. The ones
+     * no longer needed are dropped.
+     */
+    private List<MapperTask> takeBackupAttempts(TaskTrackerInfo taskTracker){
+        List<MapperTask> tasks = null;
+        synchronized (backupMapperTasks){
+            tasks = backupMapperTasks.remove(taskTracker.toString());
+        }
+        List<MapperTask> assigned = new ArrayList<MapperTask>();
+        if(tasks == null){
+            return assigned;
+        }
+        for(MapperTask task : tasks){
+            if(task.getStatus() == TaskStatus.PENDING &&
+               taskTracker.toString().equals(task.getBackupTaskTrackerName())){
+                taskTracker.increaseMapperTaskNumber();
+                assigned.add(task);
+            }
+        }
+        return assigned;
+    }
+
+    private void queueBackupAttempt(TaskTrackerInfo taskTracker, MapperTask task){
+        synchronized (backupMapperTasks){
+            List<MapperTask> tasks = backupMapperTasks.get(taskTracker.toString());
+            if(tasks == null){
+                tasks = new ArrayList<MapperTask>();
+                backupMapperTasks.put(taskTracker.toString(), tasks);
+            }
+            tasks.add(task);
+        }
+    }
+
+    /**
+     * Get the running jobs, and drop the waiting tasks of the others.
+     */
+    private List<JobInfo> getRunningJobs(){
+        List<JobInfo> runningJobs = new ArrayList<JobInfo>();
+        for(JobInfo job : jobs.values()){
+            if(job.getStatus() == JobStatus.PENDING){
+                runningJobs.add(job);
+            }
+        }
+        Iterator<Integer> iterator = waitingMapperTasks.keySet().iterator();
+        while(iterator.hasNext()){
+            JobInfo job = jobs.get(iterator.next());
+            if(job == null || job.getStatus() != JobStatus.PENDING){
+                iterator.remove();
+            }
+        }
+        return runningJobs;
+    }
+
+    /**
+     * Take a waiting mapper task of the job for the task tracker. The
+     * tasks whose input data is on the host of task tracker go first.
+     * The others are only taken after waiting for localityDelay, since
+     * it's better to wait a little for a free slot on the data than to
+     * pull the whole block over the network.
+     */
+    private MapperTask takeMapperTask(JobInfo job, TaskTrackerInfo taskTracker, long now){
+        LinkedList<MapperTask> tasks = waitingMapperTasks.get(job.getId());
+        if(tasks == null){
+            return null;
+        }
+        MapperTask result = null;
+        Iterator<MapperTask> iterator = tasks.iterator();
+        while(iterator.hasNext()){
+            MapperTask task = iterator.next();
+            if(task.getStatus() != TaskStatus.PENDING){
+                iterator.remove();
+                continue;
+            }
+            FileBlock block = task.getInputFileBlock();
+            if(Arrays.asList(block.getHosts()).contains(taskTracker.getHost())){
+                result = task;
+                break;
+            }
+            if(result == null && (block.getHosts().length == 0 || now - task.getQueuedTime() >= localityDelay)){
+                result = task;
+            }
+        }
+        if(result != null){
+            tasks.remove(result);
+        }
+        if(tasks.size() == 0){
+            waitingMapperTasks.remove(job.getId());
+        }
+        return result;
+    }
+
+    /**
+     * Pick the task tracker for a backup attempt of mapper task. A task
+     * tracker on the host holding the input data is preferred, then the
+     * least loaded one. The task tracker excluded is skipped.
+     */
+    private TaskTrackerInfo getMapperTaskTracker(FileBlock fileBlock, String excluded){
+        Set<String> hosts = new HashSet<String>();
+        if(fileBlock != null){
+            hosts.addAll(Arrays.asList(fileBlock.getHosts()));
+        }
         TaskTrackerInfo minTaskTracker = null;
+        TaskTrackerInfo minLocalTaskTracker = null;
         Iterator<TaskTrackerInfo> iterator = taskTackers.values().iterator();
         while(iterator.hasNext()){
             TaskTrackerInfo taskTracker = iterator.next();
-            if(taskTracker.isValid() &&
-               (minTaskTracker == null || taskTracker.getMapperTaskNumber() < minTaskTracker.getMapperTaskNumber())){
+            if(!taskTracker.isValid() || taskTracker.toString().equals(excluded)){
+                continue;
+            }
+            if(minTaskTracker == null || taskTracker.getMapperTaskNumber() < minTaskTracker.getMapperTaskNumber()){
                 minTaskTracker = taskTracker;
             }
+            if(hosts.contains(taskTracker.getHost()) &&
+               taskTracker.getMapperTaskNumber() < taskTracker.getMapperSlots() &&
+               (minLocalTaskTracker == null ||
+                taskTracker.getMapperTaskNumber() < minLocalTaskTracker.getMapperTaskNumber())){
+                minLocalTaskTracker = taskTracker;
+            }
         }
-        if(minTaskTracker != null){
-            minTaskTracker.increaseMapperTaskNumber();
+        if(minLocalTaskTracker != null){
+            minTaskTracker = minLocalTaskTracker;
         }
         return minTaskTracker;
     }
 
     private TaskTrackerInfo getReducerTaskTracker(){
+        return getReducerTaskTracker(null);
+    }
+
+    private TaskTrackerInfo getReducerTaskTracker(String excluded){
         TaskTrackerInfo minTaskTracker = null;
         Iterator<TaskTrackerInfo> iterator = taskTackers.values().iterator();
         while(iterator.hasNext()){
             TaskTrackerInfo taskTracker = iterator.next();
-            if(taskTracker.isValid() &&
+            if(taskTracker.isValid() && !taskTracker.toString().equals(excluded) &&
                (minTaskTracker == null || taskTracker.getReducerTaskNumber() < minTaskTracker.getReducerTaskNumber())){
                 minTaskTracker = taskTracker;
             }
@@ -369,18 +708,29 @@ public class JobTracker {
         List<ReducerTask> reducerTasks = job.getReducerTasks();
         Map<String, List<ReducerTask>> map = new HashMap<String, List<ReducerTask>>();
         for(ReducerTask reducerTask : reducerTasks){
-            List<ReducerTask> subList = map.get(reducerTask.getTaskTrackerName());
-            if(subList == null){
-                subList = new ArrayList<ReducerTask>();
-                map.put(reducerTask.getTaskTrackerName(), subList);
+            if(reducerTask.getStartTime() == 0){
+                reducerTask.setStartTime(System.currentTimeMillis());
+            }
+            addReducerTask(map, reducerTask.getTaskTrackerName(), reducerTask);
+            if(reducerTask.getBackupTaskTrackerName() != null){
+                addReducerTask(map, reducerTask.getBackupTaskTrackerName(), reducerTask);
             }
-            subList.add(reducerTask);
         }
         for(String taskTrackerName : map.keySet()){
             sendReducerTask(taskTrackerName, mapperTask, map.get(taskTrackerName));
         }
     }
 
+    private void addReducerTask(Map<String, List<ReducerTask>> map, String taskTrackerName,
+                                ReducerTask reducerTask){
+        List<ReducerTask> subList = map.get(taskTrackerName);
+        if(subList == null){
+            subList = new ArrayList<ReducerTask>();
+            map.put(taskTrackerName, subList);
+        }
+        subList.add(reducerTask);
+    }
+
     private void sendReducerTask(String taskTrackerName, MapperTask mapperTask, List<ReducerTask> reducerTasks) {
         TaskTrackerService taskTrackerService = null;
         try {
@@ -396,23 +746,33 @@ public class JobTracker {
     private void taskTrackerFailed(String taskTrackerName){
         TaskTrackerInfo taskTracker = taskTackers.remove(taskTrackerName);
         LOG.warn("task tracker " + taskTrackerName + " is unavailable now! remain " + taskTackers.size());
+        dropBackupAttempts(taskTrackerName);
         if(taskTracker != null){
             List<MapperTask> pendingMapperTasks = taskTracker.getPendingMapperTask();
             List<ReducerTask> pendingReducerTasks = taskTracker.getPendingReducerTask();
-            TaskTrackerInfo newMapperTaskTracker = getMapperTaskTracker();
             TaskTrackerInfo newReducerTaskTracker = getReducerTaskTracker();
 
-            if(newMapperTaskTracker != null && newReducerTaskTracker != null){
+            if(newReducerTaskTracker != null){
                 for(MapperTask mapperTask : pendingMapperTasks){
-                    migrateTaskTracker(mapperTask, newMapperTaskTracker);
-                    mapperTasksQueue.offer(mapperTask);
+                    if(promoteBackupAttempt(mapperTask)){
+                        continue;
+                    }
+                    requeueMapperTask(mapperTask);
                 }
+                List<ReducerTask> migratedReducerTasks = new ArrayList<ReducerTask>();
                 for(ReducerTask reducerTask : pendingReducerTasks){
+                    if(promoteBackupAttempt(reducerTask)){
+                        continue;
+                    }
                     migrateTaskTracker(reducerTask, newReducerTaskTracker);
+                    reducerTask.setStartTime(System.currentTimeMillis());
+                    migratedReducerTasks.add(reducerTask);
                 }
-                List<MapperTask> finishedMapperTasks = getFinishedMapper(pendingReducerTasks);
-                for(MapperTask mapperTask : finishedMapperTasks){
-                    sendReducerTask(newReducerTaskTracker.toString(), mapperTask, pendingReducerTasks);
+                if(migratedReducerTasks.size() > 0){
+                    List<MapperTask> finishedMapperTasks = getFinishedMapper(migratedReducerTasks);
+                    for(MapperTask mapperTask : finishedMapperTasks){
+                        sendReducerTask(newReducerTaskTracker.toString(), mapperTask, migratedReducerTasks);
+                    }
                 }
                 return;
             }
@@ -431,7 +791,9 @@ public class JobTracker {
             if(job.getTask(task.getTaskId()).getStatus() != TaskStatus.PENDING){
                 return true;
             }
-            if(!job.getTask(task.getTaskId()).getTaskTrackerName().equals(task.getTaskTrackerName())){
+            Task myTask = job.getTask(task.getTaskId());
+            if(!task.getTaskTrackerName().equals(myTask.getTaskTrackerName()) &&
+               !task.getTaskTrackerName().equals(myTask.getBackupTaskTrackerName())){
                 return true;
             }
             if(job.getTask(task.getTaskId()).getAttemptCount() != task.getAttemptCount()){
@@ -441,11 +803,181 @@ public class JobTracker {
         }
     }
 
-    private boolean migrateTaskTracker(Task task){
-        TaskTrackerInfo taskTracker = getMapperTaskTracker();
-        if(task instanceof ReducerTask){
-            taskTracker = getReducerTaskTracker();
+    /**
+     * Make the attempt on the task tracker the one of task, when it
+     * finishes first. The other attempt is left to run to its end,
+     * and its report is ignored as expired.
+     */
+    private void acceptAttempt(Task task, String taskTrackerName){
+        if(taskTrackerName.equals(task.getBackupTaskTrackerName())){
+            TaskTrackerInfo taskTracker = taskTackers.get(taskTrackerName);
+            if(taskTracker != null){
+                migrateTaskTracker(task, taskTracker);
+            } else {
+                task.setTaskTrackerName(taskTrackerName);
+            }
+        }
+        task.setBackupTaskTrackerName(null);
+    }
+
+    /**
+     * Drop the failed attempt on the task tracker if the task has
+     * another attempt running.
+     *
+     * @return true if the other attempt goes on
+     */
+    private boolean discardAttempt(Task task, String taskTrackerName){
+        if(task.getBackupTaskTrackerName() == null){
+            return false;
+        }
+        if(taskTrackerName.equals(task.getBackupTaskTrackerName())){
+            task.setBackupTaskTrackerName(null);
+            return true;
+        }
+        return promoteBackupAttempt(task);
+    }
+
+    /**
+     * Make the backup attempt the only attempt of task.
+     *
+     * @return false if there is no backup attempt alive
+     */
+    private boolean promoteBackupAttempt(Task task){
+        String backupTaskTrackerName = task.getBackupTaskTrackerName();
+        task.setBackupTaskTrackerName(null);
+        if(backupTaskTrackerName == null){
+            return false;
+        }
+        TaskTrackerInfo taskTracker = taskTackers.get(backupTaskTrackerName);
+        if(taskTracker == null || !taskTracker.isValid()){
+            return false;
+        }
+        migrateTaskTracker(task, taskTracker);
+        return true;
+    }
+
+    private void dropBackupAttempts(String taskTrackerName){
+        synchronized (backupMapperTasks){
+            backupMapperTasks.remove(taskTrackerName);
+        }
+        for(JobInfo job : jobs.values()){
+            List<Task> tasks = new ArrayList<Task>(job.getMapperTasks());
+            tasks.addAll(job.getReducerTasks());
+            for(Task task : tasks){
+                if(taskTrackerName.equals(task.getBackupTaskTrackerName())){
+                    task.setBackupTaskTrackerName(null);
+                }
+                if(task instanceof ReducerTask &&
+                   taskTrackerName.equals(((ReducerTask) task).getCommitterName())){
+                    ((ReducerTask) task).setCommitterName(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Launch backup attempts for the stragglers among the tasks. A task
+     * is a straggler if it has run for speculativeLag, and its progress
+     * rate is below speculativeSlowness of the average rate of the tasks.
+     * The stragglers expected to finish last go first, and at most
+     * SPECULATIVE_CAP of the tasks run backup attempts at the same time.
+     */
+    private void speculate(JobInfo job, List<Task> tasks){
+        long now = System.currentTimeMillis();
+        double rateSum = 0;
+        int rateCount = 0;
+        int finishedCount = 0;
+        int backupCount = 0;
+        final Map<Integer, Double> rates = new HashMap<Integer, Double>();
+        final Map<Integer, Double> timeLeft = new HashMap<Integer, Double>();
+        List<Task> candidates = new ArrayList<Task>();
+        for(Task task : tasks){
+            if(task.getStartTime() <= 0){
+                continue;
+            }
+            if(task.getStatus() == TaskStatus.SUCCEED && task.getFinishTime() > task.getStartTime()){
+                rateSum += 1.0 / (task.getFinishTime() - task.getStartTime());
+                rateCount++;
+                finishedCount++;
+            } else if(task.getStatus() == TaskStatus.PENDING){
+                if(task.getBackupTaskTrackerName() != null){
+                    backupCount++;
+                    continue;
+                }
+                long elapsed = Math.max(1, now - task.getStartTime());
+                double progress = getProgress(task);
+                double rate = progress / elapsed;
+                rateSum += rate;
+                rateCount++;
+                if(elapsed >= speculativeLag){
+                    rates.put(task.getTaskId(), rate);
+                    timeLeft.put(task.getTaskId(), rate > 0 ? (1 - progress) / rate : Double.MAX_VALUE);
+                    candidates.add(task);
+                }
+            }
+        }
+        if(finishedCount == 0 || candidates.size() == 0){
+            return;
         }
+        double threshold = speculativeSlowness * rateSum / rateCount;
+        int limit = Math.max(1, (int) (tasks.size() * MapReduceConstants.SPECULATIVE_CAP)) - backupCount;
+        Collections.sort(candidates, new Comparator<Task>() {
+            @Override
+            public int compare(Task o1, Task o2) {
+                return timeLeft.get(o2.getTaskId()).compareTo(timeLeft.get(o1.getTaskId()));
+            }
+        });
+        for(Task task : candidates){
+            if(limit <= 0){
+                break;
+            }
+            if(rates.get(task.getTaskId()) < threshold && launchBackupAttempt(job, task)){
+                limit--;
+            }
+        }
+    }
+
+    private double getProgress(Task task){
+        if(task.getTaskTrackerName() == null){
+            return 0;
+        }
+        TaskTrackerInfo taskTracker = taskTackers.get(task.getTaskTrackerName());
+        return taskTracker == null ? 0 : taskTracker.getTaskProgress(task.getTaskId());
+    }
+
+    private boolean launchBackupAttempt(JobInfo job, Task task){
+        TaskTrackerInfo taskTracker = null;
+        synchronized (job){
+            if(task.getStatus() != TaskStatus.PENDING || task.getBackupTaskTrackerName() != null){
+                return false;
+            }
+            if(task instanceof MapperTask){
+                taskTracker = getMapperTaskTracker(((MapperTask) task).getInputFileBlock(), task.getTaskTrackerName());
+                if(taskTracker != null){
+                    taskTracker.increaseMapperTaskNumber();
+                }
+            } else {
+                taskTracker = getReducerTaskTracker(task.getTaskTrackerName());
+            }
+            if(taskTracker == null){
+                return false;
+            }
+            task.setBackupTaskTrackerName(taskTracker.toString());
+        }
+        LOG.info("task " + task.getTaskId() + " job " + task.getJobId() + " is straggling on " +
+                 task.getTaskTrackerName() + ", launch a backup attempt on " + taskTracker);
+        if(task instanceof MapperTask){
+            queueBackupAttempt(taskTracker, (MapperTask) task);
+        } else {
+            for(MapperTask mapperTask : getFinishedMapper((ReducerTask) task)){
+                sendReducerTask(taskTracker.toString(), mapperTask, Arrays.asList(new ReducerTask[]{(ReducerTask) task}));
+            }
+        }
+        return true;
+    }
+
+    private boolean migrateTaskTracker(ReducerTask task){
+        TaskTrackerInfo taskTracker = getReducerTaskTracker();
         if(taskTracker == null){
             return false;
         }
@@ -470,7 +1002,10 @@ public class JobTracker {
     }
 
     private List<MapperTask> getFinishedMapper(ReducerTask reducerTask){
-        JobInfo job = jobs.get(reducerTask.getJobId());
+        return getFinishedMapper(jobs.get(reducerTask.getJobId()));
+    }
+
+    private List<MapperTask> getFinishedMapper(JobInfo job){
         List<MapperTask> mapperTasks = new ArrayList<MapperTask>();
         for(MapperTask mapperTask : job.getMapperTasks()){
             if(mapperTask.getStatus() == TaskStatus.SUCCEED){
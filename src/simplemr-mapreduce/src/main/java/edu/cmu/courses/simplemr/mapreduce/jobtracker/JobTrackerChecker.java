@@ -1,6 +1,6 @@
 /**
  * The job tracker periodically check the status of
- * task trackers.
+ * task trackers, and the stragglers of running jobs.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
@@ -16,5 +16,6 @@ public class JobTrackerChecker implements Runnable {
     @Override
     public void run() {
         jobTracker.checkTaskTrackers();
+        jobTracker.checkStragglers();
     }
 }
@@ -5,6 +5,7 @@ import edu.cmu.courses.simplemr.mapreduce.tasktracker.TaskTrackerInfo;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * The service interface that a Job tracker can provide to
@@ -15,10 +16,12 @@ import java.rmi.RemoteException;
  */
 
 public interface JobTrackerService extends Remote{
-    public void heartbeat(TaskTrackerInfo taskTrackerInfo) throws RemoteException;
+    public List<MapperTask> heartbeat(TaskTrackerInfo taskTrackerInfo) throws RemoteException;
     public void mapperTaskSucceed(MapperTask task) throws RemoteException;
     public void reducerTaskSucceed(ReducerTask task) throws RemoteException;
     public void mapperTaskFailed(MapperTask task) throws RemoteException;
     public void reducerTaskFailed(ReducerTask task) throws RemoteException;
     public void reducerTaskFailedOnMapperTask(ReducerTask reducerTask, MapperTask mapperTask) throws RemoteException;
+    public boolean canCommit(ReducerTask task) throws RemoteException;
+    public void reducerTaskDiscarded(ReducerTask task) throws RemoteException;
 }
@@ -10,6 +10,7 @@ import java.net.UnknownHostException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
 
 /**
  * Implementation of service class. The class contains a JobTracker
@@ -29,8 +30,8 @@ public class JobTrackerServiceImpl extends UnicastRemoteObject implements JobTra
     }
 
     @Override
-    public void heartbeat(TaskTrackerInfo taskTrackerInfo) throws RemoteException {
-        jobTracker.updateTaskTracker(taskTrackerInfo);
+    public List<MapperTask> heartbeat(TaskTrackerInfo taskTrackerInfo) throws RemoteException {
+        return jobTracker.heartbeat(taskTrackerInfo);
     }
 
     @Override
@@ -57,4 +58,14 @@ public class JobTrackerServiceImpl extends UnicastRemoteObject implements JobTra
     public void reducerTaskFailedOnMapperTask(ReducerTask reducerTask, MapperTask mapperTask) throws RemoteException {
         jobTracker.reducerTaskFailedOnMapper(reducerTask, mapperTask);
     }
+
+    @Override
+    public boolean canCommit(ReducerTask task) throws RemoteException {
+        return jobTracker.canCommit(task);
+    }
+
+    @Override
+    public void reducerTaskDiscarded(ReducerTask task) throws RemoteException {
+        jobTracker.reducerTaskDiscarded(task);
+    }
 }
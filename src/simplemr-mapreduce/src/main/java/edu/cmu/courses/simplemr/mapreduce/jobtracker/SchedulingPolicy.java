@@ -0,0 +1,14 @@
+/**
+ * The policy of sharing the mapper slots among running jobs.
+ * FIFO runs the jobs in the order they are submitted,
+ * FAIR gives the slot to the job running the fewest tasks,
+ * POOL shares the slots among the pools of jobs by their weights,
+ * and fairly among the jobs of a pool.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public enum SchedulingPolicy {
+    FIFO, FAIR, POOL
+}
@@ -0,0 +1,18 @@
+import java.util.List;
+
+/**
+ * The task scheduler interface decides which job gets the free
+ * mapper slots of task trackers, when several jobs are running.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public interface TaskScheduler {
+    /**
+     * Sort the running jobs, the job to get the next free slot first.
+     * A job with no waiting task near the task tracker is skipped,
+     * and the slot goes to the next one.
+     */
+    public void sort(List<JobInfo> jobs);
+}
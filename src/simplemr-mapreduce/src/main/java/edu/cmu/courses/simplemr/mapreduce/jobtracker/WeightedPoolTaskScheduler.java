@@ -0,0 +1,74 @@
+import java.util.*;
+
+/**
+ * Share the free slots among the pools of jobs by their weights.
+ * The slot goes to the pool running the fewest mapper tasks per
+ * unit of weight, and then to its job running the fewest tasks.
+ * Pools not given a weight have weight 1.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class WeightedPoolTaskScheduler implements TaskScheduler {
+    private static final double DEFAULT_WEIGHT = 1.0;
+
+    private Map<String, Double> weights;
+
+    /**
+     * @param weights the weights of pools, like "batch=1,interactive=4"
+     */
+    public WeightedPoolTaskScheduler(String weights){
+        this.weights = new HashMap<String, Double>();
+        for(String pair : weights.split(",")){
+            if(pair.trim().length() == 0){
+                continue;
+            }
+            String[] fields = pair.split("=");
+            double weight = 0;
+            try {
+                weight = fields.length == 2 ? Double.parseDouble(fields[1].trim()) : 0;
+            } catch (NumberFormatException e){
+                weight = 0;
+            }
+            if(weight <= 0){
+                throw new IllegalArgumentException("Invalid pool weight " + pair +
+                                                   ", it should be like pool=weight and weight > 0");
+            }
+            this.weights.put(fields[0].trim(), weight);
+        }
+    }
+
+    @Override
+    public void sort(List<JobInfo> jobs) {
+        final Map<Integer, Integer> runningTasks = new HashMap<Integer, Integer>();
+        final Map<String, Integer> poolRunningTasks = new HashMap<String, Integer>();
+        for(JobInfo job : jobs){
+            int number = job.getRunningMapperTaskNumber();
+            Integer poolNumber = poolRunningTasks.get(job.getConfig().getPool());
+            runningTasks.put(job.getId(), number);
+            poolRunningTasks.put(job.getConfig().getPool(), (poolNumber == null ? 0 : poolNumber) + number);
+        }
+        Collections.sort(jobs, new Comparator<JobInfo>() {
+            @Override
+            public int compare(JobInfo o1, JobInfo o2) {
+                double share1 = getShare(o1.getConfig().getPool());
+                double share2 = getShare(o2.getConfig().getPool());
+                if(share1 != share2){
+                    return share1 < share2 ? -1 : 1;
+                }
+                int diff = runningTasks.get(o1.getId()) - runningTasks.get(o2.getId());
+                return diff != 0 ? diff : o1.compareTo(o2);
+            }
+
+            private double getShare(String pool){
+                return poolRunningTasks.get(pool) / getWeight(pool);
+            }
+        });
+    }
+
+    private double getWeight(String pool){
+        Double weight = weights.get(pool);
+        return weight == null ? DEFAULT_WEIGHT : weight;
+    }
+}
@@ -1,3 +1,5 @@
+import DataType;
+import InputFormat;
 import FileBlock;
 
 /**
@@ -11,11 +13,23 @@ import FileBlock;
 public class MapperTask extends Task {
 
     public static final String PARTITION_FILE_PREFIX = "PART_";
+    public static final String OUTPUT_FILE = "OUTPUT";
 
     private FileBlock inputFileBlock;
     private int reducerAmount;
     private String fileServerHost;
     private int fileServerPort;
+    private boolean combinerEnabled;
+    private int bufferSize;
+    private String partitionerClassName;
+    private DataType keyType;
+    private DataType valueType;
+    private int compressionLevel;
+    private int readAheadDepth;
+    private int readBufferSize;
+    private InputFormat inputFormat;
+    private int recordLength;
+    private boolean indexedOutput;
 
     public MapperTask(int jobId, FileBlock inputFileBlock, int reducerAmount) {
         super(jobId, TaskType.MAPPER);
@@ -46,4 +60,96 @@ public class MapperTask extends Task {
     public void setFileServerPort(int fileServerPort) {
         this.fileServerPort = fileServerPort;
     }
+
+    public boolean isCombinerEnabled() {
+        return combinerEnabled;
+    }
+
+    public void setCombinerEnabled(boolean combinerEnabled) {
+        this.combinerEnabled = combinerEnabled;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public String getPartitionerClassName() {
+        return partitionerClassName;
+    }
+
+    public void setPartitionerClassName(String partitionerClassName) {
+        this.partitionerClassName = partitionerClassName;
+    }
+
+    public DataType getKeyType() {
+        return keyType;
+    }
+
+    public void setKeyType(DataType keyType) {
+        this.keyType = keyType;
+    }
+
+    public DataType getValueType() {
+        return valueType;
+    }
+
+    public void setValueType(DataType valueType) {
+        this.valueType = valueType;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public int getReadAheadDepth() {
+        return readAheadDepth;
+    }
+
+    public void setReadAheadDepth(int readAheadDepth) {
+        this.readAheadDepth = readAheadDepth;
+    }
+
+    public int getReadBufferSize() {
+        return readBufferSize;
+    }
+
+    public void setReadBufferSize(int readBufferSize) {
+        this.readBufferSize = readBufferSize;
+    }
+
+    public InputFormat getInputFormat() {
+        return inputFormat;
+    }
+
+    public void setInputFormat(InputFormat inputFormat) {
+        this.inputFormat = inputFormat;
+    }
+
+    public int getRecordLength() {
+        return recordLength;
+    }
+
+    public void setRecordLength(int recordLength) {
+        this.recordLength = recordLength;
+    }
+
+    /**
+     * Whether the mapper writes all the partitions into one data file
+     * with an index of their offsets, instead of a file per partition.
+     */
+    public boolean isIndexedOutput() {
+        return indexedOutput;
+    }
+
+    public void setIndexedOutput(boolean indexedOutput) {
+        this.indexedOutput = indexedOutput;
+    }
 }
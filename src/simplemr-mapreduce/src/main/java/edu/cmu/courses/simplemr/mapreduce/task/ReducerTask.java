@@ -1,3 +1,5 @@
+import DataType;
+
 /**
  * The Reducer Task extends the Task superclass. It contains
  * the parameters need to perform a reduce task.
@@ -12,6 +14,10 @@ public class ReducerTask extends Task {
     private int mapperAmount;
     private int replicas;
     private int lineCount;
+    private DataType keyType;
+    private DataType valueType;
+    private String committerName;
+    private int mergeFactor;
 
     public ReducerTask(int jobId) {
         super(jobId, TaskType.REDUCER);
@@ -56,4 +62,40 @@ public class ReducerTask extends Task {
     public void setLineCount(int lineCount) {
         this.lineCount = lineCount;
     }
+
+    public DataType getKeyType() {
+        return keyType;
+    }
+
+    public void setKeyType(DataType keyType) {
+        this.keyType = keyType;
+    }
+
+    public DataType getValueType() {
+        return valueType;
+    }
+
+    public void setValueType(DataType valueType) {
+        this.valueType = valueType;
+    }
+
+    /**
+     * The task tracker allowed to write the output of the reducer task
+     * to DFS, only one attempt of a reducer task can commit.
+     */
+    public String getCommitterName() {
+        return committerName;
+    }
+
+    public void setCommitterName(String committerName) {
+        this.committerName = committerName;
+    }
+
+    public int getMergeFactor() {
+        return mergeFactor;
+    }
+
+    public void setMergeFactor(int mergeFactor) {
+        this.mergeFactor = mergeFactor;
+    }
 }
@@ -25,6 +25,10 @@ public abstract class Task implements Serializable, Comparable<Task>{
     protected String taskTrackerName;
     protected String mrClassName;
     protected String outputDir;
+    protected String backupTaskTrackerName;
+    protected long startTime;
+    protected long queuedTime;
+    protected long finishTime;
 
     public Task(int jobId, TaskType type){
         setTaskId(maxId.getAndIncrement());
@@ -104,6 +108,42 @@ public abstract class Task implements Serializable, Comparable<Task>{
         this.taskTrackerName = taskTracker.toString();
     }
 
+    /**
+     * The task tracker running the speculative backup attempt
+     * of the task, null if there isn't one.
+     */
+    public String getBackupTaskTrackerName() {
+        return backupTaskTrackerName;
+    }
+
+    public void setBackupTaskTrackerName(String name) {
+        this.backupTaskTrackerName = name;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    public long getQueuedTime() {
+        return queuedTime;
+    }
+
+    public void setQueuedTime(long queuedTime) {
+        this.queuedTime = queuedTime;
+    }
+
+    public long getFinishTime() {
+        return finishTime;
+    }
+
+    public void setFinishTime(long finishTime) {
+        this.finishTime = finishTime;
+    }
+
     public String getMRClassName() {
         return mrClassName;
     }
@@ -0,0 +1,125 @@
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+
+/**
+ * The HTTP client fetching the mapper output for all the reducers
+ * of a task tracker. Connections are kept alive and reused, and at
+ * most maxPerHost of them go to the same file server, so a mapper
+ * finishing first isn't hit by every reducer at once. Waiting for a
+ * connection is bounded by the timeout as well. A failed fetch
+ * is retried with exponential backoff before the mapper is blamed,
+ * and the retry asks only for the bytes not received yet.
+ *
+ * @author Jian Fang(jianf)
+ * @author Fangyu Gao(fangyug)
+ */
+
+public class ShuffleClient {
+    private static Logger LOG = LoggerFactory.getLogger(ShuffleClient.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private int maxRetries;
+    private long retryBackoff;
+
+    public ShuffleClient(int maxTotal, int maxPerHost, int maxRetries, long retryBackoff, int timeout){
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        this.connectionManager.setMaxTotal(maxTotal);
+        this.connectionManager.setDefaultMaxPerRoute(maxPerHost);
+        RequestConfig config = RequestConfig.custom()
+                                            .setConnectionRequestTimeout(timeout)
+                                            .setConnectTimeout(timeout)
+                                            .setSocketTimeout(timeout)
+                                            .build();
+        this.httpClient = HttpClients.custom()
+                                     .setConnectionManager(connectionManager)
+                                     .setDefaultRequestConfig(config)
+                                     .build();
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+    }
+
+    /**
+     * Fetch the file on the file server to the local file, waiting
+     * for a connection if maxPerHost fetches are running on the host.
+     * A wait longer than the timeout fails the try like a broken one.
+     */
+    public void fetch(String host, int port, String filePath, String localFile)
+            throws IOException {
+        String uri = "http://" + host + ":" + port + "/" + filePath;
+        for(int retry = 0; ; retry++){
+            try {
+                download(uri, localFile, retry == 0 ? 0 : new File(localFile).length());
+                return;
+            } catch (IOException e){
+                if(retry >= maxRetries){
+                    throw e;
+                }
+                long backoff = retryBackoff << retry;
+                LOG.warn("failed to fetch " + uri + ", retry in " + backoff + " ms", e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie){
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while fetching " + uri);
+                }
+            }
+        }
+    }
+
+    public void close()
+            throws IOException {
+        httpClient.close();
+    }
+
+    /**
+     * Download the file from offset, appending to the bytes received
+     * before. Read the whole response, so the connection goes back to
+     * the pool and is reused by the next fetch from the same host.
+     */
+    private void download(String uri, String localFile, long offset)
+            throws IOException {
+        HttpGet get = new HttpGet(uri);
+        if(offset > 0){
+            get.setHeader("Range", "bytes=" + offset + "-");
+        }
+        CloseableHttpResponse response = httpClient.execute(get);
+        try {
+            HttpEntity entity = response.getEntity();
+            int status = response.getStatusLine().getStatusCode();
+            if(status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE){
+                new File(localFile).delete();
+            }
+            if((status != HttpStatus.SC_OK && status != HttpStatus.SC_PARTIAL_CONTENT) || entity == null){
+                throw new IOException("failed to fetch " + uri + ", status " + status);
+            }
+            boolean append = offset > 0 && status == HttpStatus.SC_PARTIAL_CONTENT;
+            InputStream in = entity.getContent();
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(localFile, append), BUFFER_SIZE);
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int n = 0;
+                while((n = in.read(buffer)) >= 0){
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                out.close();
+                in.close();
+            }
+        } finally {
+            response.close();
+        }
+    }
+}
@@ -22,7 +22,10 @@ import java.util.concurrent.*;
 
 /**
  * The Task Tracker class for accepting map and reduce task
- * from Job Tracker.
+ * from Job Tracker. Mapper tasks come with the reply of heartbeat,
+ * as many as the free mapper slots. The reducers fetch and reduce
+ * on a pool of their own, so a fetch waiting for a slow file server
+ * never holds a thread the mappers need, and the other way round.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
@@ -57,9 +60,25 @@ public class TaskTracker {
     @Parameter(names = {"-b", "--heartbeat"}, description = "the period of heartbeat (ms)")
     private long heartbeatPeriod = Constants.DEFAULT_HEARTBEAT_PERIOD;
 
-    @Parameter(names = {"-n", "--num-threads"}, description = "the number of threads")
+    @Parameter(names = {"-n", "--num-threads"}, description = "the number of threads running mappers, and of " +
+            "those running reducers")
     private int threadPoolSize = Constants.DEFAULT_THREAD_POOL_SIZE;
 
+    @Parameter(names = {"-ms", "--mapper-slots"}, description = "the max number of mapper tasks running at the same time")
+    private int mapperSlots = MapReduceConstants.DEFAULT_MAPPER_SLOTS;
+
+    @Parameter(names = {"-pf", "--parallel-fetches"}, description = "the max number of mapper outputs " +
+            "every reducer fetches at the same time")
+    private int parallelFetches = MapReduceConstants.DEFAULT_PARALLEL_FETCHES;
+
+    @Parameter(names = {"-hf", "--host-fetches"}, description = "the max number of fetches from the same host " +
+            "at the same time")
+    private int hostFetches = MapReduceConstants.DEFAULT_HOST_FETCHES;
+
+    @Parameter(names = {"-fr", "--fetch-retries"}, description = "how many times a failed fetch of mapper output " +
+            "is retried before the mapper task is reported")
+    private int fetchRetries = MapReduceConstants.DEFAULT_FETCH_RETRIES;
+
     @Parameter(names = {"-h", "--help"}, help = true)
     private boolean help;
 
@@ -71,6 +90,9 @@ public class TaskTracker {
     private TaskTrackerService taskTrackerService;
     private JobTrackerService jobTrackerService;
     private ExecutorService threadPool;
+    private ExecutorService fetchPool;
+    private ExecutorService backgroundPool;
+    private ShuffleClient shuffleClient;
     private ScheduledExecutorService heartbeatPool;
     private Registry jobTrackerRegistry;
 
@@ -81,18 +103,29 @@ public class TaskTracker {
     public void start()
             throws Exception {
         taskTrackerInfo = new TaskTrackerInfo(Utils.getHost(), registryPort, fileServerPort, invalidPeriod);
+        taskTrackerInfo.setMapperSlots(mapperSlots);
         threadPool = Executors.newFixedThreadPool(threadPoolSize);
+        fetchPool = Executors.newFixedThreadPool(threadPoolSize);
+        backgroundPool = Executors.newCachedThreadPool();
+        shuffleClient = new ShuffleClient(threadPoolSize, hostFetches, fetchRetries,
+                                          MapReduceConstants.FETCH_RETRY_BACKOFF, MapReduceConstants.FETCH_TIMEOUT);
         heartbeatPool = Executors.newScheduledThreadPool(Constants.DEFAULT_SCHEDULED_THREAD_POOL_SIZE);
         bindService();
         heartbeatPool.scheduleAtFixedRate(new TaskTrackerHeartbeat(this), 0, heartbeatPeriod, TimeUnit.MILLISECONDS);
         new FileServer(fileServerPort, tempDir).start();
     }
 
+    /**
+     * Run the mapper task, which is reported as running from the next
+     * heartbeat on, so the job tracker knows the assignment arrived.
+     */
     public void runMapperTask(MapperTask task){
+        task.setTaskTrackerName(taskTrackerInfo.toString());
         task.setOutputDir(tempDir);
         task.setFileServerHost(taskTrackerInfo.getHost());
         task.setFileServerPort(taskTrackerInfo.getFileServerPort());
         task.createTaskFolder();
+        updateProgress(task, 0);
         threadPool.execute(new TaskTrackerMapperWorker(task, this));
         taskTrackerInfo.increaseMapperTaskNumber();
     }
@@ -103,6 +136,46 @@ public class TaskTracker {
         }
     }
 
+    /**
+     * Run the work of a task, like merging files, without holding the
+     * thread asking for it. The work gets its own thread, since a task
+     * worker may wait for it while holding a thread of the pool.
+     */
+    public void runInBackground(Runnable work){
+        backgroundPool.execute(work);
+    }
+
+    /**
+     * Record the progress of a running task, which is reported to the
+     * job tracker with the heartbeat to find the stragglers.
+     */
+    public void updateProgress(Task task, float progress){
+        taskTrackerInfo.setTaskProgress(task.getTaskId(), progress);
+    }
+
+    /**
+     * Ask the job tracker whether this attempt of the reducer task can
+     * write its output, since a backup attempt may be running elsewhere.
+     */
+    public boolean canCommit(ReducerTask task){
+        try {
+            return jobTrackerService.canCommit(task);
+        } catch (RemoteException e) {
+            LOG.warn("can't communicate with job tracker", e);
+            return false;
+        }
+    }
+
+    public void reducerDiscarded(ReducerTask task){
+        try {
+            jobTrackerService.reducerTaskDiscarded(task);
+        } catch (RemoteException e) {
+            LOG.warn("can't communicate with job tracker", e);
+        }
+        taskTrackerInfo.decreaseReducerTaskNumber();
+        taskFinished(task);
+    }
+
     public void increaseReducerTaskAmount(){
         taskTrackerInfo.increaseReducerTaskNumber();
     }
@@ -116,6 +189,7 @@ public class TaskTracker {
         }
         taskTrackerInfo.decreaseMapperTaskNumber();
         taskFinished(task);
+        heartbeatPool.execute(new TaskTrackerHeartbeat(this));
     }
 
     public void mapperFailed(MapperTask task){
@@ -126,6 +200,7 @@ public class TaskTracker {
         }
         taskTrackerInfo.decreaseMapperTaskNumber();
         taskFinished(task);
+        heartbeatPool.execute(new TaskTrackerHeartbeat(this));
     }
 
     public void reducerFailedOnMapper(ReducerTask reducerTask, MapperTask mapperTask){
@@ -158,9 +233,17 @@ public class TaskTracker {
         taskFinished(task);
     }
 
-    public void heartbeat(){
+    /**
+     * Report the status to job tracker, and run the mapper tasks
+     * assigned in return. A heartbeat is also sent right after a
+     * mapper task finishes, so the free slot is filled quickly.
+     */
+    public synchronized void heartbeat(){
         try {
-            jobTrackerService.heartbeat(taskTrackerInfo);
+            List<MapperTask> tasks = jobTrackerService.heartbeat(taskTrackerInfo);
+            for(MapperTask task : tasks){
+                runMapperTask(task);
+            }
         } catch (RemoteException e) {
             LOG.error("can't heartbeat with job tracker", e);
         }
@@ -190,6 +273,14 @@ public class TaskTracker {
         return jobTrackerRegistry;
     }
 
+    public ShuffleClient getShuffleClient(){
+        return shuffleClient;
+    }
+
+    public int getParallelFetches(){
+        return parallelFetches;
+    }
+
     public boolean needHelp(){
         return help;
     }
@@ -215,10 +306,12 @@ public class TaskTracker {
 
     private void taskFinished(Task task){
         task.setTaskTrackerName(taskTrackerInfo.toString());
+        taskTrackerInfo.removeTaskProgress(task.getTaskId());
         task.deleteTaskFolder();
     }
 
     private void runReducerTask(MapperTask mapperTask, ReducerTask reducerTask){
+        reducerTask.setTaskTrackerName(taskTrackerInfo.toString());
         TaskTrackerReducerWorker reducerWorker = new TaskTrackerReducerWorker(reducerTask, this);
         TaskTrackerReducerWorker oldReducerWorker = reducerWorkers.putIfAbsent(reducerTask.getTaskId(), reducerWorker);
         if(oldReducerWorker != null){
@@ -230,7 +323,7 @@ public class TaskTracker {
         }
         reducerWorker.addMapperTask(mapperTask);
         reducerWorker.updateReducerTask(reducerTask);
-        threadPool.execute(reducerWorker);
+        fetchPool.execute(reducerWorker);
     }
 
     public static void main(String[] args) throws Exception {
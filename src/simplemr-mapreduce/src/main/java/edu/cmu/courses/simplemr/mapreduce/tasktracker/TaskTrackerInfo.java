@@ -1,17 +1,17 @@
 import Constants;
+import MapReduceConstants;
 import MapperTask;
 import ReducerTask;
 import Task;
 import TaskStatus;
 
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Include all the information about Task Tracker.
+ * Include all the information about Task Tracker, and the
+ * progress (from 0 to 1) of the tasks it's running.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
@@ -21,11 +21,13 @@ public class TaskTrackerInfo implements Serializable{
     private String host;
     private int registryPort;
     private int fileServerPort;
+    private int mapperSlots;
     private int mapperTaskNumber;
     private int reduceTaskNumber;
     private long timestamp;
     private long invalidPeriod;
     private Set<Task> tasks;
+    private Map<Integer, Float> taskProgress;
 
     public TaskTrackerInfo(String host, int registryPort, int fileServerPort){
         this(host, registryPort, fileServerPort, Constants.DEFAULT_HEARTBEAT_INVALID);
@@ -35,11 +37,13 @@ public class TaskTrackerInfo implements Serializable{
         this.host = host;
         this.registryPort = registryPort;
         this.fileServerPort = fileServerPort;
+        this.mapperSlots = MapReduceConstants.DEFAULT_MAPPER_SLOTS;
         this.mapperTaskNumber = 0;
         this.reduceTaskNumber = 0;
         this.timestamp = 0;
         this.invalidPeriod = invalidPeriod;
         this.tasks = new TreeSet<Task>();
+        this.taskProgress = new ConcurrentHashMap<Integer, Float>();
     }
 
     public Task[] getTasks(){
@@ -99,6 +103,17 @@ public class TaskTrackerInfo implements Serializable{
         return fileServerPort;
     }
 
+    /**
+     * The max number of mapper tasks running at the same time.
+     */
+    public int getMapperSlots() {
+        return mapperSlots;
+    }
+
+    public void setMapperSlots(int mapperSlots) {
+        this.mapperSlots = mapperSlots;
+    }
+
     public int getMapperTaskNumber() {
         return mapperTaskNumber;
     }
@@ -131,6 +146,27 @@ public class TaskTrackerInfo implements Serializable{
         reduceTaskNumber = number;
     }
 
+    public Map<Integer, Float> getTaskProgress(){
+        return taskProgress;
+    }
+
+    public void setTaskProgress(Map<Integer, Float> taskProgress){
+        this.taskProgress = taskProgress;
+    }
+
+    public float getTaskProgress(int taskId){
+        Float progress = taskProgress.get(taskId);
+        return progress == null ? 0 : progress;
+    }
+
+    public void setTaskProgress(int taskId, float progress){
+        taskProgress.put(taskId, progress);
+    }
+
+    public void removeTaskProgress(int taskId){
+        taskProgress.remove(taskId);
+    }
+
     public void setTimestamp(long timestamp){
         this.timestamp = timestamp;
     }
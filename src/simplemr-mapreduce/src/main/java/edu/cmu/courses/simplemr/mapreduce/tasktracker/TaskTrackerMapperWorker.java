@@ -1,94 +1,73 @@
-import Constants;
-import Utils;
 import MapReduce;
-import OutputCollector;
-import Pair;
+import Partitioner;
 import DFSFileReader;
+import MapOutputBuffer;
+import RecordReader;
 import MapperTask;
 import Task;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-
 /**
- * The task worker to do the map work. It run the user map function
- * and save the result to local. Use TreeMap to automatically sort
- * on mapper side, and can handle duplicate keys and values.
+ * The task worker to do the map work. It reads the input records
+ * in the input format of job, run the user map function and collect
+ * the result into a MapOutputBuffer, which partitions and sorts the
+ * records, spills them to local disk when the memory budget is used
+ * up, and finally saves the partition files for reducers. If the
+ * combiner is enabled, every key group is combined before saving.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
  */
 
 public class TaskTrackerMapperWorker extends TaskTrackerWorker{
+    private static final int PROGRESS_INTERVAL = 1024;
+
     private DFSFileReader reader;
 
     public TaskTrackerMapperWorker(Task task, TaskTracker taskTracker) {
         super(task, taskTracker);
         reader = new DFSFileReader(taskTracker.getDfsMasterRegistryHost(),
                                    taskTracker.getDfsMasterRegistryPort(),
-                                   ((MapperTask)task).getInputFileBlock());
+                                   ((MapperTask)task).getInputFileBlock(),
+                                   ((MapperTask)task).getReadAheadDepth(),
+                                   ((MapperTask)task).getReadBufferSize() << 10);
     }
 
     @Override
     public void run() {
+        MapOutputBuffer buffer = null;
         try {
-            OutputCollector collector = collect();
-            saveToLocal(collector);
+            MapReduce mr = newMRInstance();
+            Partitioner partitioner = newPartitionerInstance(mr, ((MapperTask) task).getPartitionerClassName());
+            buffer = new MapOutputBuffer((MapperTask) task, mr, partitioner);
+            collect(mr, buffer);
+            buffer.close();
             taskTracker.mapperSucceed((MapperTask) task);
         } catch (Exception e) {
+            if(buffer != null){
+                buffer.abort();
+            }
             taskTracker.mapperFailed((MapperTask) task);
         }
     }
 
-    private OutputCollector collect()
+    private void collect(MapReduce mr, MapOutputBuffer buffer)
             throws Exception {
-        String line = null;
-        MapReduce mr = newMRInstance();
-        OutputCollector collector = new OutputCollector();
+        MapperTask mapperTask = (MapperTask) task;
+        RecordReader recordReader = RecordReader.newInstance(mapperTask.getInputFormat(),
+                                                             mapperTask.getRecordLength(), reader);
         reader.open();
-        while((line = reader.readLine()) != null){
-            Pair<String, String> entry = Utils.splitLine(line);
-            mr.map(entry.getKey(), line, collector);
-        }
-        reader.close();
-        return collector;
-    }
-
-    private void saveToLocal(OutputCollector collector)
-            throws IOException {
-        String folderName = ((MapperTask)task).getOutputDir() + Constants.FILE_SEPARATOR + task.getTaskFolderName();
-        File[] outputFiles = new File[((MapperTask)task).getReducerAmount()];
-        for(int i = 0; i < outputFiles.length; i++){
-            outputFiles[i] = new File(folderName + Constants.FILE_SEPARATOR + MapperTask.PARTITION_FILE_PREFIX + i);
-            outputFiles[i].createNewFile();
-        }
-
-        TreeMap<String, List<String>> recordMap = collector.getMap();
-        int mapSize = recordMap.size();
-        int rangeCount = Math.min(recordMap.size(), ((MapperTask)task).getReducerAmount());
-        int rangeSize = mapSize / rangeCount;
-        for(int i = 0; i < rangeCount; i++){
-            int startKeyIndex = i * rangeSize;
-            int endKeyIndex = (i + 1) * rangeSize;
-            if(i == rangeCount - 1){
-                endKeyIndex = mapSize;
-            }
-            BufferedWriter writer = new BufferedWriter(new FileWriter(outputFiles[i]));
-            for(int j = startKeyIndex; j < endKeyIndex; j++){
-                Map.Entry<String, List<String>> entry = recordMap.pollFirstEntry();
-                List<String> values = entry.getValue();
-                for(String value : values){
-                    writer.write(entry.getKey() + Constants.MAPREDUCE_DELIMITER + value);
-                    writer.newLine();
+        try {
+            long count = 0;
+            while(true){
+                if(!recordReader.next(mr, buffer)){
+                    break;
+                }
+                if(++count % PROGRESS_INTERVAL == 0){
+                    taskTracker.updateProgress(task, reader.getProgress());
                 }
             }
-            writer.flush();
-            writer.close();
+        } finally {
+            reader.close();
         }
     }
 }
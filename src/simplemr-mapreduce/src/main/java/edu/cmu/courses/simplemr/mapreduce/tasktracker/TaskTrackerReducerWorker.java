@@ -1,25 +1,31 @@
 import Constants;
-import Utils;
-import DFSClient;
+import DataType;
 import MapReduce;
 import OutputCollector;
-import Pair;
 import DFSFileWriter;
+import DFSOutputCollector;
+import IntermediateFileMerger;
+import IntermediateFileWriter;
+import IntermediateRecordReader;
+import IntermediateValueIterator;
+import MapReduceConstants;
 import MapperTask;
 import ReducerTask;
 import Task;
-import org.apache.commons.io.IOUtils;
 
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The task worker to do the reduce work. The reducer keep
- * track its partitions of files from every mapper. If all
- * the files are being collected, the mapper will merge the
- * files outside memory, and map it to the output directory
- * in DFS.
+ * track its partitions of files from every mapper. While the
+ * files are being collected, the sorted files on disk are
+ * merged in the background, mergeFactor files at a time. If
+ * all the files are being collected, the reducer merges the
+ * few files left as a stream and reduces it straight into the
+ * output directory in DFS.
  *
  * @author Jian Fang(jianf)
  * @author Fangyu Gao(fangyug)
@@ -28,18 +34,27 @@ import java.util.concurrent.ConcurrentHashMap;
 public class TaskTrackerReducerWorker extends TaskTrackerWorker {
 
     public static final String MAPPER_RESULTS_DIR = "mappers";
+    private static final float COPY_PHASE = 2.0f / 3;
 
     private PriorityQueue<MapperTask> mapperTasks;
     private ConcurrentHashMap<Integer, String> mapperFiles;
     private ConcurrentHashMap<Integer, Integer> mapperLocks;
-    private Boolean finished;
+    private int fetchers;
+    private List<String> sortedFiles;
+    private boolean merging;
+    private int mergedFileCount;
+    private AtomicBoolean finished;
 
     public TaskTrackerReducerWorker(Task task, TaskTracker taskTracker) {
         super(task, taskTracker);
         this.mapperTasks = new PriorityQueue<MapperTask>();
         this.mapperFiles = new ConcurrentHashMap<Integer, String>();
         this.mapperLocks = new ConcurrentHashMap<Integer, Integer>();
-        this.finished = false;
+        this.fetchers = 0;
+        this.sortedFiles = new ArrayList<String>();
+        this.merging = false;
+        this.mergedFileCount = 0;
+        this.finished = new AtomicBoolean(false);
     }
 
     public void createFolders(){
@@ -61,51 +76,66 @@ public class TaskTrackerReducerWorker extends TaskTrackerWorker {
         this.task.setAttemptCount(task.getAttemptCount());
     }
 
+    /**
+     * Fetch the queued mapper outputs. At most parallelFetches workers of
+     * a reducer task fetch at the same time, the others leave their mapper
+     * tasks in the queue to the running ones.
+     */
     @Override
     public void run() {
         if(mapperFiles.size() == ((ReducerTask)task).getMapperAmount()){
             return;
         }
-        MapperTask mapperTask = getNextMapperTask();
-        if(mapperTask == null){
-            return;
+        synchronized (mapperTasks){
+            if(fetchers >= taskTracker.getParallelFetches()){
+                return;
+            }
+            fetchers++;
         }
-        try {
-            copyMapperResult(mapperTask);
-        } catch (IOException e) {
-            taskTracker.reducerFailedOnMapper(((ReducerTask)task), mapperTask);
-            return;
+        MapperTask mapperTask = null;
+        while((mapperTask = getNextMapperTask()) != null){
+            try {
+                copyMapperResult(mapperTask);
+            } catch (IOException e) {
+                taskTracker.reducerFailedOnMapper(((ReducerTask)task), mapperTask);
+                continue;
+            }
+            taskTracker.updateProgress(task, COPY_PHASE * mapperFiles.size() / ((ReducerTask)task).getMapperAmount());
         }
 
-        synchronized (finished){
-            try{
-                if(mapperFiles.size() == ((ReducerTask)task).getMapperAmount() && (!finished)){
-                    List<String> files = new ArrayList<String>(mapperFiles.values());
-                    String unreducedFile = getAbsolutePath(getReducerResultFilePath("unreduced"));
-                    String reducedFile = getAbsolutePath(getReducerResultFilePath(null));
-
-                    Utils.mergeSortedFiles(files, unreducedFile);
-
-                    OutputCollector collector = new OutputCollector();
-                    MapReduce mr = newMRInstance();
-                    reduce(unreducedFile, mr, collector);
-
-                    saveResultToLocal(reducedFile, collector);
-                    saveResultToDFS(reducedFile);
-
-                    taskTracker.reducerSucceed(((ReducerTask)task));
-                    finished = true;
+        if(mapperFiles.size() < ((ReducerTask)task).getMapperAmount() || !finished.compareAndSet(false, true)){
+            return;
+        }
+        try{
+            List<String> files = waitForMerging();
+            IntermediateRecordReader reader = IntermediateFileMerger.open(files, ((ReducerTask)task).getMergeFactor());
+            try {
+                if(!taskTracker.canCommit((ReducerTask)task)){
+                    taskTracker.reducerDiscarded((ReducerTask)task);
+                    return;
                 }
-            } catch (Exception e){
-                taskTracker.reducerFailed(((ReducerTask)task));
+                reduceToDFS(reader);
+            } finally {
+                reader.close();
             }
+
+            taskTracker.reducerSucceed(((ReducerTask)task));
+        } catch (Exception e){
+            taskTracker.reducerFailed(((ReducerTask)task));
         }
     }
 
+    /**
+     * Take the next mapper task to fetch, the fetcher stops
+     * if there is none.
+     */
     private MapperTask getNextMapperTask(){
         MapperTask mapperTask = null;
         synchronized (mapperTasks){
             mapperTask = mapperTasks.poll();
+            if(mapperTask == null){
+                fetchers--;
+            }
         }
         return mapperTask;
     }
@@ -127,8 +157,12 @@ public class TaskTrackerReducerWorker extends TaskTrackerWorker {
     }
 
     private String getMapperResultURI(MapperTask mapperTask){
-        return mapperTask.getTaskFolderName().replaceAll(Constants.FILE_SEPARATOR, "/") + "/" +
-               MapperTask.PARTITION_FILE_PREFIX + ((ReducerTask)task).getPartitionIndex();
+        String folder = mapperTask.getTaskFolderName().replaceAll(Constants.FILE_SEPARATOR, "/") + "/";
+        if(mapperTask.isIndexedOutput()){
+            return folder + MapperTask.OUTPUT_FILE + "?" + MapReduceConstants.PARTITION_PARAMETER + "=" +
+                   ((ReducerTask)task).getPartitionIndex();
+        }
+        return folder + MapperTask.PARTITION_FILE_PREFIX + ((ReducerTask)task).getPartitionIndex();
     }
 
     private String getReducerResultFilePath(String suffix){
@@ -143,64 +177,130 @@ public class TaskTrackerReducerWorker extends TaskTrackerWorker {
     private void copyMapperResult(MapperTask mapperTask)
             throws IOException {
         synchronized (getMapperLock(mapperTask)){
-            if(mapperFiles.contains(mapperTask.getTaskId())){
+            if(mapperFiles.containsKey(mapperTask.getTaskId())){
                 return;
             }
-            InputStream in = Utils.getRemoteFile(mapperTask.getFileServerHost(),
-                    mapperTask.getFileServerPort(),
-                    getMapperResultURI(mapperTask));
             String outputFile = getAbsolutePath(getMapperResultFilePath(mapperTask));
-            FileOutputStream out = new FileOutputStream(outputFile);
-            IOUtils.copy(in, out);
-            in.close();
-            out.close();
+            taskTracker.getShuffleClient().fetch(mapperTask.getFileServerHost(),
+                                                 mapperTask.getFileServerPort(),
+                                                 getMapperResultURI(mapperTask), outputFile);
+            addSortedFile(outputFile);
             mapperFiles.put(mapperTask.getTaskId(), outputFile);
         }
     }
 
-    private void reduce(String inputFile, MapReduce mr, OutputCollector collector)
-            throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader(inputFile));
-        String line = null;
-        String key = null;
-        String prevKey = null;
-        List<String> values = new ArrayList<String>();
-        while(true){
-            line = reader.readLine();
-            if(line == null){
-                if(key != null){
-                    mr.reduce(key, values.iterator(), collector);
+    /**
+     * Add a sorted file to merge. Once there are 2 * mergeFactor - 1
+     * files, the mergeFactor smallest ones are merged in the background,
+     * so there are less than 2 * mergeFactor files left for the final
+     * merge after the last mapper. Only one merge runs at a time.
+     */
+    private void addSortedFile(String file){
+        int mergeFactor = ((ReducerTask)task).getMergeFactor();
+        synchronized (sortedFiles){
+            sortedFiles.add(file);
+            if(merging || mergeFactor < 2 || sortedFiles.size() < 2 * mergeFactor - 1){
+                return;
+            }
+            Collections.sort(sortedFiles, new Comparator<String>() {
+                @Override
+                public int compare(String o1, String o2) {
+                    return Long.valueOf(new File(o1).length()).compareTo(new File(o2).length());
                 }
-                break;
+            });
+            List<String> files = new ArrayList<String>(sortedFiles.subList(0, mergeFactor));
+            sortedFiles.removeAll(files);
+            String mergedFile = getAbsolutePath(getReducerResultFilePath("merged_" + mergedFileCount++));
+            merging = true;
+            taskTracker.runInBackground(new Merger(files, mergedFile));
+        }
+    }
+
+    private void mergeFinished(List<String> files, String mergedFile, boolean succeed){
+        synchronized (sortedFiles){
+            merging = false;
+            if(succeed){
+                for(String file : files){
+                    new File(file).delete();
+                }
+                addSortedFile(mergedFile);
+            } else {
+                sortedFiles.addAll(files);
             }
-            Pair<String, String> entry = Utils.splitLine(line);
-            key = entry.getKey();
-            if(prevKey != null && !key.equals(prevKey)){
-                mr.reduce(prevKey, values.iterator(), collector);
-                values.clear();
+            sortedFiles.notifyAll();
+        }
+    }
+
+    private List<String> waitForMerging()
+            throws InterruptedException {
+        synchronized (sortedFiles){
+            while(merging){
+                sortedFiles.wait();
             }
-            values.add(entry.getValue());
-            prevKey = key;
+            return new ArrayList<String>(sortedFiles);
         }
     }
 
-    private void saveResultToLocal(String localFileName, OutputCollector collector)
+    /**
+     * Reduce the key groups of the sorted input. The values of a key
+     * are read from the merge while reduce iterates them, so a hot key
+     * doesn't need its values in memory.
+     */
+    private void reduce(IntermediateRecordReader reader, MapReduce mr, OutputCollector collector)
             throws IOException {
-        FileWriter writer = new FileWriter(localFileName);
-        Iterator<Pair<String, String>> iterator = collector.getIterator();
-        while(iterator.hasNext()){
-            Pair<String, String> entry = iterator.next();
-            writer.write(entry.getKey() + Constants.MAPREDUCE_DELIMITER + entry.getValue() + "\n");
+        DataType keyType = ((ReducerTask)task).getKeyType();
+        DataType valueType = ((ReducerTask)task).getValueType();
+        IntermediateValueIterator values = new IntermediateValueIterator(reader, valueType);
+        while(values.nextKey()){
+            String key = keyType.decode(values.getKey(), 0, values.getKeyLength());
+            mr.reduce(key, values, collector);
         }
-        writer.flush();
-        writer.close();
     }
 
-    private void saveResultToDFS(String localFile)
+    /**
+     * Reduce the merged input straight into the output file in DFS. The
+     * output is deleted if the reducer fails, so a partial file isn't
+     * left for the job.
+     */
+    private void reduceToDFS(IntermediateRecordReader reader)
             throws Exception {
-        DFSClient dfsClient = new DFSClient(taskTracker.getDfsMasterRegistryHost(),
-                                            taskTracker.getDfsMasterRegistryPort());
-        dfsClient.connect();
-        dfsClient.writeText(localFile, ((ReducerTask)task).getReplicas(), ((ReducerTask)task).getLineCount());
+        MapReduce mr = newMRInstance();
+        DFSFileWriter writer = new DFSFileWriter(taskTracker.getDfsMasterRegistryHost(),
+                                                 taskTracker.getDfsMasterRegistryPort(),
+                                                 getReducerResultFileName(),
+                                                 ((ReducerTask)task).getLineCount(),
+                                                 ((ReducerTask)task).getReplicas());
+        writer.open();
+        try {
+            reduce(reader, mr, new DFSOutputCollector(writer));
+            writer.close();
+        } catch (Exception e){
+            writer.delete();
+            throw e;
+        }
+    }
+
+    private class Merger implements Runnable {
+        private List<String> files;
+        private String mergedFile;
+
+        public Merger(List<String> files, String mergedFile){
+            this.files = files;
+            this.mergedFile = mergedFile;
+        }
+
+        @Override
+        public void run() {
+            boolean succeed = false;
+            try {
+                IntermediateFileMerger.merge(files, new IntermediateFileWriter(mergedFile),
+                                             ((ReducerTask)task).getMergeFactor());
+                succeed = true;
+            } catch (IOException e) {
+                new File(mergedFile).delete();
+            } finally {
+                mergeFinished(files, mergedFile, succeed);
+            }
+        }
     }
 }
@@ -15,6 +15,5 @@ import java.util.List;
  */
 
 public interface TaskTrackerService extends Remote{
-    public void runMapperTask(MapperTask task) throws RemoteException;
     public void runReducerTask(MapperTask mapperTask, List<ReducerTask> reducerTasks) throws RemoteException;
 }
@@ -25,12 +25,6 @@ public class TaskTrackerServiceImpl extends UnicastRemoteObject implements TaskT
         this.taskTracker = taskTracker;
     }
 
-    @Override
-    public void runMapperTask(MapperTask task)
-            throws RemoteException {
-        taskTracker.runMapperTask(task);
-    }
-
     @Override
     public void runReducerTask(MapperTask mapperTask, List<ReducerTask> reducerTasks)
             throws RemoteException {
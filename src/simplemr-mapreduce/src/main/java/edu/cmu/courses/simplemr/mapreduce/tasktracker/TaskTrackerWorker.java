@@ -1,6 +1,7 @@
 import JobClientService;
 import MapReduce;
 import Pair;
+import Partitioner;
 import RemoteClassLoader;
 import Task;
 
@@ -42,6 +43,14 @@ public abstract class TaskTrackerWorker implements Runnable {
         return (MapReduce) mrClass.newInstance();
     }
 
+    protected Partitioner newPartitionerInstance(MapReduce mr, String className)
+            throws IllegalAccessException, InstantiationException, ClassNotFoundException {
+        if(className.equals(task.getMRClassName())){
+            return (Partitioner) mr;
+        }
+        return (Partitioner) Class.forName(className).newInstance();
+    }
+
     protected Class<?> loadRemoteClass(){
         try{
             Registry registry = taskTracker.getJobTrackerRegistry();